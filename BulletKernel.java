@@ -0,0 +1,23 @@
+// ==================== NÚCLEO DEL PASE DE BALAS ====================
+// Núcleo del pase de balas sobre arrays primitivos: y[i] += vy[i] para las
+// count primeras, y el bit i de offScreen (bit i % 64 de la palabra i / 64)
+// indica si la bala quedó fuera de [0, screenHeight] (el criterio de
+// Bullet.isOffScreen). Los bits a partir de count no se usan. Devuelve
+// cuántas quedaron fuera.
+// Va en su propio archivo porque también lo implementa VectorBulletKernel.java
+interface BulletKernel {
+    int advance(int[] y, int[] vy, int count, int screenHeight, long[] offScreen);
+    
+    // La versión SIMD (VectorBulletKernel.java) se compila aparte porque
+    // necesita el módulo incubador jdk.incubator.vector:
+    //   javac --add-modules jdk.incubator.vector VectorBulletKernel.java
+    //   java --add-modules jdk.incubator.vector ...
+    // Si no está compilada o no se añadió el módulo se usa la escalar
+    static BulletKernel best() {
+        try {
+            return (BulletKernel) Class.forName("VectorBulletKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            return new ScalarBulletKernel();
+        }
+    }
+}
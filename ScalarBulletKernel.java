@@ -0,0 +1,28 @@
+// ==================== NÚCLEO ESCALAR DEL PASE DE BALAS ====================
+// Versión sin vectores de BulletKernel; VectorBulletKernel la usa para las
+// balas que no llenan un vector
+class ScalarBulletKernel implements BulletKernel {
+    @Override
+    public int advance(int[] y, int[] vy, int count, int screenHeight, long[] offScreen) {
+        return advanceRange(y, vy, 0, count, screenHeight, offScreen);
+    }
+    
+    // Tramo [from, count); si from no empieza palabra, sus bits anteriores se conservan
+    static int advanceRange(int[] y, int[] vy, int from, int count, int screenHeight, long[] offScreen) {
+        int outside = 0;
+        long word = (from & 63) == 0 ? 0 : offScreen[from >>> 6];
+        for (int i = from; i < count; i++) {
+            int py = y[i] + vy[i];
+            y[i] = py;
+            // Sin saltos: el bit de signo de py y de screenHeight - py dice si está fuera
+            long out = ((py | (screenHeight - py)) >>> 31) & 1;
+            word |= out << i;
+            outside += (int) out;
+            if ((i & 63) == 63 || i == count - 1) {
+                offScreen[i >>> 6] = word;
+                word = 0;
+            }
+        }
+        return outside;
+    }
+}
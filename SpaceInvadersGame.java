@@ -1,21 +1,213 @@
 import java.util.*;
 
+// ==================== REGISTRO DE EVENTOS ====================
+// Tipos de evento del juego con su nivel y su plantilla de texto. Los
+// argumentos son siempre (nombre, valor1, valor2) y la plantilla elige cuáles usa
+enum GameEventType {
+    MANAGER_READY(GameEventLog.Level.INFO, "🎮 Space Invaders Game Manager inicializado"),
+    GAME_STARTED(GameEventLog.Level.INFO, "🚀 ¡Space Invaders iniciado! Nivel: %2$d"),
+    GAME_OVER(GameEventLog.Level.INFO, "💀 Game Over! Puntuación final: %2$d"),
+    SCORE_ADDED(GameEventLog.Level.INFO, "⭐ +%2$d puntos! Puntuación total: %3$d"),
+    LEVEL_UP(GameEventLog.Level.INFO, "🎯 ¡Nivel %2$d desbloqueado!"),
+    LIFE_LOST(GameEventLog.Level.INFO, "💔 Vida perdida! Vidas restantes: %2$d"),
+    WAVE_CREATED(GameEventLog.Level.INFO, "🌊 Oleada de %2$d enemigos creada para nivel %3$d"),
+    BASIC_APPEARS(GameEventLog.Level.INFO, "👾 %1$s aparece en pantalla"),
+    SOLDIER_APPEARS(GameEventLog.Level.INFO, "👾⚔️ %1$s aparece armado"),
+    BOSS_APPEARS(GameEventLog.Level.INFO, "🛸👑 %1$s aparece como jefe de nivel"),
+    SPEED_BOOST(GameEventLog.Level.INFO, "⚡ %1$s aumenta velocidad temporalmente"),
+    SHIELD_UP(GameEventLog.Level.INFO, "🛡️ %1$s activa escudo defensivo"),
+    REINFORCEMENTS(GameEventLog.Level.INFO, "💫 %1$s invoca refuerzos enemigos"),
+    DAMAGE_TAKEN(GameEventLog.Level.DEBUG, "🎯 %1$s recibe %2$d de daño. Vida: %3$d"),
+    ENEMY_DESTROYED(GameEventLog.Level.DEBUG, "💀 %1$s destruido!"),
+    SINGLE_SHOT(GameEventLog.Level.DEBUG, "💥 %1$s dispara una bala"),
+    MULTIPLE_SHOT(GameEventLog.Level.DEBUG, "💥💥💥 %1$s dispara ráfaga de 3 balas"),
+    LASER_SHOT(GameEventLog.Level.DEBUG, "🔴 %1$s dispara un láser potente"),
+    LINEAR_MOVE(GameEventLog.Level.TRACE, "📍 %1$s se mueve linealmente hacia abajo"),
+    ZIGZAG_MOVE(GameEventLog.Level.TRACE, "🔄 %1$s se mueve en zigzag"),
+    AGGRESSIVE_MOVE(GameEventLog.Level.TRACE, "⚡ %1$s se mueve agresivamente");
+    
+    final GameEventLog.Level level;
+    final String template;
+    
+    GameEventType(GameEventLog.Level level, String template) {
+        this.level = level;
+        this.template = template;
+    }
+}
+
+// Registro asíncrono de eventos: quien juega solo copia el tipo y los
+// argumentos en un búfer circular (sin crear texto ni objetos) y un hilo
+// escritor en segundo plano da formato y escribe. Si el búfer se llena el
+// evento se descarta y se cuenta: el tick nunca espera al escritor.
+// Configuración:
+//   -Dgame.log.level=TRACE|DEBUG|INFO|OFF  (por defecto TRACE: se ve todo)
+//   -Dgame.log.sample=N  registra 1 de cada N eventos TRACE y DEBUG de cada tipo
+class GameEventLog {
+    enum Level { TRACE, DEBUG, INFO, OFF }
+    
+    private static final Level LEVEL = Level.valueOf(System.getProperty("game.log.level", "TRACE"));
+    private static final int SAMPLE = Integer.getInteger("game.log.sample", 1);
+    private static final int CAPACITY = 8192; // potencia de 2
+    private static final int MASK = CAPACITY - 1;
+    
+    // Búfer circular en arreglos paralelos; published[i] es la secuencia
+    // que ocupa la ranura i cuando ya está completa
+    private static final GameEventType[] types = new GameEventType[CAPACITY];
+    private static final String[] names = new String[CAPACITY];
+    private static final int[] firstValues = new int[CAPACITY];
+    private static final int[] secondValues = new int[CAPACITY];
+    private static final java.util.concurrent.atomic.AtomicLongArray published =
+            new java.util.concurrent.atomic.AtomicLongArray(CAPACITY);
+    private static final java.util.concurrent.atomic.AtomicLong claimed = new java.util.concurrent.atomic.AtomicLong();
+    private static final java.util.concurrent.atomic.AtomicLong dropped = new java.util.concurrent.atomic.AtomicLong();
+    // Contadores de muestreo sin sincronizar: entre hilos el muestreo es aproximado
+    private static final long[] sampleCounters = new long[GameEventType.values().length];
+    private static volatile long consumed = 0;
+    private static volatile Thread writer;
+    
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            published.set(i, -1);
+        }
+    }
+    
+    private GameEventLog() {}
+    
+    public static boolean isEnabled(GameEventType type) {
+        return type.level.ordinal() >= LEVEL.ordinal();
+    }
+    
+    public static void log(GameEventType type) {
+        log(type, null, 0, 0);
+    }
+    
+    public static void log(GameEventType type, String name) {
+        log(type, name, 0, 0);
+    }
+    
+    public static void log(GameEventType type, int first) {
+        log(type, null, first, 0);
+    }
+    
+    public static void log(GameEventType type, int first, int second) {
+        log(type, null, first, second);
+    }
+    
+    public static void log(GameEventType type, String name, int first, int second) {
+        if (!isEnabled(type)) {
+            return;
+        }
+        if (SAMPLE > 1 && type.level != Level.INFO
+                && sampleCounters[type.ordinal()]++ % SAMPLE != 0) {
+            return;
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= CAPACITY) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        
+        int slot = (int) (sequence & MASK);
+        types[slot] = type;
+        names[slot] = name;
+        firstValues[slot] = first;
+        secondValues[slot] = second;
+        published.set(slot, sequence); // publica la ranura para el escritor
+        
+        if (writer == null) {
+            startWriter();
+        }
+    }
+    
+    // Espera a que el escritor haya volcado todo lo registrado hasta ahora.
+    // La demo lo llama antes de escribir su propio texto para no desordenar la salida
+    public static void flush() {
+        long target = claimed.get();
+        Thread thread = writer;
+        while (thread != null && consumed < target) {
+            java.util.concurrent.locks.LockSupport.unpark(thread);
+            Thread.onSpinWait();
+        }
+    }
+    
+    public static long getDropped() { return dropped.get(); }
+    
+    private static synchronized void startWriter() {
+        if (writer != null) {
+            return;
+        }
+        Thread thread = new Thread(GameEventLog::drain, "game-event-log");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(GameEventLog::flush));
+        writer = thread;
+    }
+    
+    private static void drain() {
+        java.io.PrintStream out = System.out;
+        long next = 0;
+        while (true) {
+            int slot = (int) (next & MASK);
+            if (published.get(slot) != next) {
+                out.flush();
+                java.util.concurrent.locks.LockSupport.parkNanos(100_000);
+                continue;
+            }
+            GameEventType type = types[slot];
+            String name = names[slot];
+            int first = firstValues[slot];
+            int second = secondValues[slot];
+            names[slot] = null;
+            out.println(String.format(type.template, name, first, second));
+            next++;
+            consumed = next; // libera la ranura
+        }
+    }
+}
+
 // ==================== PATRÓN SINGLETON ====================
-// Gestor único del juego Space Invaders
+// Estado de una sesión de juego. Cada sesión tiene el suyo, así varias
+// partidas pueden ejecutarse a la vez en la misma JVM sin bloqueos
+class SpaceInvadersGameState {
+    private int score = 0;
+    private int level = 1;
+    private int lives = 3;
+    private boolean gameRunning = false;
+    
+    public void startGame() { gameRunning = true; }
+    public void endGame() { gameRunning = false; }
+    public void addScore(int points) { score += points; }
+    public void nextLevel() { level++; }
+    
+    // Devuelve true si era la última vida
+    public boolean loseLife() {
+        lives--;
+        if (lives <= 0) {
+            endGame();
+            return true;
+        }
+        return false;
+    }
+    
+    // Getters
+    public int getScore() { return score; }
+    public int getLevel() { return level; }
+    public int getLives() { return lives; }
+    public boolean isGameRunning() { return gameRunning; }
+}
+
+// Gestor único del juego Space Invaders: fachada sobre el estado de la
+// partida de la demostración
 class SpaceInvadersGameManager {
     private static SpaceInvadersGameManager instance;
-    private int score;
-    private int level;
-    private int lives;
-    private boolean gameRunning;
+    private final SpaceInvadersGameState state = new SpaceInvadersGameState();
     
     // Constructor privado para implementar Singleton
     private SpaceInvadersGameManager() {
-        this.score = 0;
-        this.level = 1;
-        this.lives = 3;
-        this.gameRunning = false;
-        System.out.println("🎮 Space Invaders Game Manager inicializado");
+        GameEventLog.log(GameEventType.MANAGER_READY);
     }
     
     // Método thread-safe para obtener la única instancia
@@ -28,38 +220,39 @@ class SpaceInvadersGameManager {
     
     // Métodos del gestor del juego
     public void startGame() {
-        gameRunning = true;
-        System.out.println("🚀 ¡Space Invaders iniciado! Nivel: " + level);
+        state.startGame();
+        GameEventLog.log(GameEventType.GAME_STARTED, state.getLevel());
     }
     
     public void endGame() {
-        gameRunning = false;
-        System.out.println("💀 Game Over! Puntuación final: " + score);
+        state.endGame();
+        GameEventLog.log(GameEventType.GAME_OVER, state.getScore());
     }
     
     public void addScore(int points) {
-        score += points;
-        System.out.println("⭐ +"+points+" puntos! Puntuación total: " + score);
+        state.addScore(points);
+        GameEventLog.log(GameEventType.SCORE_ADDED, points, state.getScore());
     }
     
     public void nextLevel() {
-        level++;
-        System.out.println("🎯 ¡Nivel " + level + " desbloqueado!");
+        state.nextLevel();
+        GameEventLog.log(GameEventType.LEVEL_UP, state.getLevel());
     }
     
     public void loseLife() {
-        lives--;
-        System.out.println("💔 Vida perdida! Vidas restantes: " + lives);
-        if (lives <= 0) {
-            endGame();
+        boolean lastLife = state.loseLife();
+        GameEventLog.log(GameEventType.LIFE_LOST, state.getLives());
+        if (lastLife) {
+            GameEventLog.log(GameEventType.GAME_OVER, state.getScore());
         }
     }
     
     // Getters
-    public int getScore() { return score; }
-    public int getLevel() { return level; }
-    public int getLives() { return lives; }
-    public boolean isGameRunning() { return gameRunning; }
+    public SpaceInvadersGameState getState() { return state; }
+    public int getScore() { return state.getScore(); }
+    public int getLevel() { return state.getLevel(); }
+    public int getLives() { return state.getLives(); }
+    public boolean isGameRunning() { return state.isGameRunning(); }
 }
 
 // ==================== PATRÓN STRATEGY ====================
@@ -74,7 +267,7 @@ class LinearMovementStrategy implements MovementStrategy {
     @Override
     public void move(Enemy enemy) {
         enemy.setY(enemy.getY() + 1);
-        System.out.println("📍 " + enemy.getName() + " se mueve linealmente hacia abajo");
+        GameEventLog.log(GameEventType.LINEAR_MOVE, enemy.getName());
     }
     
     @Override
@@ -101,7 +294,7 @@ class ZigzagMovementStrategy implements MovementStrategy {
             movingRight = !movingRight;
         }
         
-        System.out.println("🔄 " + enemy.getName() + " se mueve en zigzag");
+        GameEventLog.log(GameEventType.ZIGZAG_MOVE, enemy.getName());
     }
     
     @Override
@@ -115,7 +308,7 @@ class AggressiveMovementStrategy implements MovementStrategy {
     @Override
     public void move(Enemy enemy) {
         enemy.setY(enemy.getY() + 2); // Más rápido
-        System.out.println("⚡ " + enemy.getName() + " se mueve agresivamente");
+        GameEventLog.log(GameEventType.AGGRESSIVE_MOVE, enemy.getName());
     }
     
     @Override
@@ -134,7 +327,7 @@ interface ShootingStrategy {
 class SingleShotStrategy implements ShootingStrategy {
     @Override
     public void shoot(Enemy enemy) {
-        System.out.println("💥 " + enemy.getName() + " dispara una bala");
+        GameEventLog.log(GameEventType.SINGLE_SHOT, enemy.getName());
     }
     
     @Override
@@ -147,7 +340,7 @@ class SingleShotStrategy implements ShootingStrategy {
 class MultipleShotStrategy implements ShootingStrategy {
     @Override
     public void shoot(Enemy enemy) {
-        System.out.println("💥💥💥 " + enemy.getName() + " dispara ráfaga de 3 balas");
+        GameEventLog.log(GameEventType.MULTIPLE_SHOT, enemy.getName());
     }
     
     @Override
@@ -160,7 +353,7 @@ class MultipleShotStrategy implements ShootingStrategy {
 class LaserShotStrategy implements ShootingStrategy {
     @Override
     public void shoot(Enemy enemy) {
-        System.out.println("🔴 " + enemy.getName() + " dispara un láser potente");
+        GameEventLog.log(GameEventType.LASER_SHOT, enemy.getName());
     }
     
     @Override
@@ -204,17 +397,28 @@ abstract class Enemy {
         }
     }
     
-    public void takeDamage(int damage) {
+    // Los puntos van al estado de la sesión indicada
+    public void takeDamage(int damage, SpaceInvadersGameState state) {
         health -= damage;
-        System.out.println("🎯 " + name + " recibe " + damage + " de daño. Vida: " + health);
+        GameEventLog.log(GameEventType.DAMAGE_TAKEN, name, damage, health);
         if (health <= 0) {
-            destroy();
+            destroy(state);
         }
     }
     
+    public void destroy(SpaceInvadersGameState state) {
+        GameEventLog.log(GameEventType.ENEMY_DESTROYED, name);
+        state.addScore(points);
+        GameEventLog.log(GameEventType.SCORE_ADDED, points, state.getScore());
+    }
+    
+    // Atajos sobre la partida del gestor único
+    public void takeDamage(int damage) {
+        takeDamage(damage, SpaceInvadersGameManager.getInstance().getState());
+    }
+    
     public void destroy() {
-        System.out.println("💀 " + name + " destruido!");
-        SpaceInvadersGameManager.getInstance().addScore(points);
+        destroy(SpaceInvadersGameManager.getInstance().getState());
     }
     
     // Getters y Setters
@@ -239,12 +443,12 @@ class BasicAlien extends Enemy {
     
     @Override
     public void display() {
-        System.out.println("👾 " + name + " aparece en pantalla");
+        GameEventLog.log(GameEventType.BASIC_APPEARS, name);
     }
     
     @Override
     public void specialAbility() {
-        System.out.println("⚡ " + name + " aumenta velocidad temporalmente");
+        GameEventLog.log(GameEventType.SPEED_BOOST, name);
     }
 }
 
@@ -258,12 +462,12 @@ class SoldierAlien extends Enemy {
     
     @Override
     public void display() {
-        System.out.println("👾⚔️ " + name + " aparece armado");
+        GameEventLog.log(GameEventType.SOLDIER_APPEARS, name);
     }
     
     @Override
     public void specialAbility() {
-        System.out.println("🛡️ " + name + " activa escudo defensivo");
+        GameEventLog.log(GameEventType.SHIELD_UP, name);
         health += 1;
     }
 }
@@ -278,12 +482,12 @@ class UFOBoss extends Enemy {
     
     @Override
     public void display() {
-        System.out.println("🛸👑 " + name + " aparece como jefe de nivel");
+        GameEventLog.log(GameEventType.BOSS_APPEARS, name);
     }
     
     @Override
     public void specialAbility() {
-        System.out.println("💫 " + name + " invoca refuerzos enemigos");
+        GameEventLog.log(GameEventType.REINFORCEMENTS, name);
         // Lógica para crear más enemigos
     }
 }
@@ -340,21 +544,27 @@ class EnemyFactory {
             wave.add(enemy);
         }
         
-        System.out.println("🌊 Oleada de " + enemyCount + " enemigos creada para nivel " + level);
+        GameEventLog.log(GameEventType.WAVE_CREATED, enemyCount, level);
         return wave;
     }
 }
 
 // ==================== CLASE PRINCIPAL ====================
 public class SpaceInvadersGame {
+    // El texto de la demo pasa detrás de los eventos ya registrados
+    private static void println(String line) {
+        GameEventLog.flush();
+        System.out.println(line);
+    }
+    
     public static void main(String[] args) {
-        System.out.println("=".repeat(60));
-        System.out.println("🎮 SPACE INVADERS - DEMOSTRACIÓN DE PATRONES DE DISEÑO");
-        System.out.println("=".repeat(60));
+        println("=".repeat(60));
+        println("🎮 SPACE INVADERS - DEMOSTRACIÓN DE PATRONES DE DISEÑO");
+        println("=".repeat(60));
         
         // ==================== PATRÓN SINGLETON ====================
-        System.out.println("\n📋 DEMOSTRACIÓN DEL PATRÓN SINGLETON:");
-        System.out.println("-".repeat(50));
+        println("\n📋 DEMOSTRACIÓN DEL PATRÓN SINGLETON:");
+        println("-".repeat(50));
         
         // Obtener la única instancia del gestor del juego
         SpaceInvadersGameManager gameManager = SpaceInvadersGameManager.getInstance();
@@ -362,11 +572,14 @@ public class SpaceInvadersGame {
         
         // Verificar que siempre es la misma instancia
         SpaceInvadersGameManager gameManager2 = SpaceInvadersGameManager.getInstance();
-        System.out.println("✅ ¿Es la misma instancia? " + (gameManager == gameManager2));
+        println("✅ ¿Es la misma instancia? " + (gameManager == gameManager2));
+        
+        // El daño y los puntos van al estado explícito de esta partida
+        SpaceInvadersGameState state = gameManager.getState();
         
         // ==================== PATRÓN FACTORY ====================
-        System.out.println("\n🏭 DEMOSTRACIÓN DEL PATRÓN FACTORY:");
-        System.out.println("-".repeat(50));
+        println("\n🏭 DEMOSTRACIÓN DEL PATRÓN FACTORY:");
+        println("-".repeat(50));
         
         // Crear diferentes tipos de enemigos usando la fábrica
         Enemy basicAlien = EnemyFactory.createEnemy(EnemyFactory.EnemyType.BASIC_ALIEN);
@@ -379,36 +592,36 @@ public class SpaceInvadersGame {
         ufoBoss.display();
         
         // Crear enemigos según el nivel actual
-        System.out.println("\n🎯 Creando enemigos para el nivel actual:");
+        println("\n🎯 Creando enemigos para el nivel actual:");
         Enemy levelEnemy = EnemyFactory.createEnemyByLevel(gameManager.getLevel());
         levelEnemy.display();
         
         // ==================== PATRÓN STRATEGY ====================
-        System.out.println("\n🎯 DEMOSTRACIÓN DEL PATRÓN STRATEGY:");
-        System.out.println("-".repeat(50));
+        println("\n🎯 DEMOSTRACIÓN DEL PATRÓN STRATEGY:");
+        println("-".repeat(50));
         
         // Demostrar diferentes estrategias de movimiento
-        System.out.println("🏃 Estrategias de Movimiento:");
+        println("🏃 Estrategias de Movimiento:");
         basicAlien.move();
         soldierAlien.move();
         ufoBoss.move();
         
-        System.out.println("\n💥 Estrategias de Disparo:");
+        println("\n💥 Estrategias de Disparo:");
         basicAlien.shoot();
         soldierAlien.shoot();
         ufoBoss.shoot();
         
         // Cambiar estrategias dinámicamente
-        System.out.println("\n🔄 Cambiando estrategias dinámicamente:");
+        println("\n🔄 Cambiando estrategias dinámicamente:");
         basicAlien.setMovementStrategy(new AggressiveMovementStrategy());
         basicAlien.setShootingStrategy(new LaserShotStrategy());
-        System.out.println("⚡ " + basicAlien.getName() + " ahora tiene nuevas estrategias:");
+        println("⚡ " + basicAlien.getName() + " ahora tiene nuevas estrategias:");
         basicAlien.move();
         basicAlien.shoot();
         
         // ==================== SIMULACIÓN DE JUEGO ====================
-        System.out.println("\n🎮 SIMULACIÓN DE JUEGO:");
-        System.out.println("-".repeat(50));
+        println("\n🎮 SIMULACIÓN DE JUEGO:");
+        println("-".repeat(50));
         
         // Simular oleadas de enemigos
         List<Enemy> wave1 = EnemyFactory.createWave(1, 3);
@@ -416,48 +629,48 @@ public class SpaceInvadersGame {
         List<Enemy> wave3 = EnemyFactory.createWave(6, 2);
         
         // Simular combate
-        System.out.println("\n⚔️ Simulando combate:");
+        println("\n⚔️ Simulando combate:");
         for (Enemy enemy : wave1) {
             enemy.move();
             enemy.shoot();
             enemy.specialAbility();
-            enemy.takeDamage(1);
+            enemy.takeDamage(1, state);
         }
         
         // Subir de nivel
         gameManager.nextLevel();
         
         // Simular combate más intenso
-        System.out.println("\n🔥 Combate de nivel avanzado:");
+        println("\n🔥 Combate de nivel avanzado:");
         for (Enemy enemy : wave2) {
             enemy.move();
             enemy.shoot();
-            enemy.takeDamage(2);
+            enemy.takeDamage(2, state);
         }
         
         // Combate con jefe
-        System.out.println("\n👑 Combate contra jefe:");
+        println("\n👑 Combate contra jefe:");
         for (Enemy boss : wave3) {
             boss.move();
             boss.shoot();
             boss.specialAbility();
-            boss.takeDamage(3);
-            boss.takeDamage(2);
+            boss.takeDamage(3, state);
+            boss.takeDamage(2, state);
         }
         
         // ==================== RESUMEN ====================
-        System.out.println("\n📊 RESUMEN DE LA DEMOSTRACIÓN:");
-        System.out.println("-".repeat(50));
-        System.out.println("🎯 Puntuación final: " + gameManager.getScore());
-        System.out.println("🎮 Nivel alcanzado: " + gameManager.getLevel());
-        System.out.println("❤️ Vidas restantes: " + gameManager.getLives());
+        println("\n📊 RESUMEN DE LA DEMOSTRACIÓN:");
+        println("-".repeat(50));
+        println("🎯 Puntuación final: " + gameManager.getScore());
+        println("🎮 Nivel alcanzado: " + gameManager.getLevel());
+        println("❤️ Vidas restantes: " + gameManager.getLives());
         
-        System.out.println("\n✅ PATRONES IMPLEMENTADOS:");
-        System.out.println("🔹 SINGLETON: GameManager como instancia única del juego");
-        System.out.println("🔹 STRATEGY: Diferentes estrategias de movimiento y disparo");
-        System.out.println("🔹 FACTORY: Creación flexible de diferentes tipos de enemigos");
+        println("\n✅ PATRONES IMPLEMENTADOS:");
+        println("🔹 SINGLETON: GameManager como instancia única del juego");
+        println("🔹 STRATEGY: Diferentes estrategias de movimiento y disparo");
+        println("🔹 FACTORY: Creación flexible de diferentes tipos de enemigos");
         
         gameManager.endGame();
-        System.out.println("\n" + "=".repeat(60));
+        println("\n" + "=".repeat(60));
     }
 }
@@ -4,25 +4,15 @@ import java.util.*;
 import javax.swing.*;
 
 // ==================== PATRÓN SINGLETON ====================
-class GameManager {
-    private static GameManager instance;
+// Estado de una partida (puntuación, nivel, vidas). Cada GameWorld tiene el
+// suyo, así varias partidas pueden correr a la vez sin compartir nada
+class GameState {
     private int score = 0;
     private int level = 1;
     private int lives = 3;
     private boolean gameRunning = false;
     private boolean gameOver = false;
     
-    private GameManager() {
-        System.out.println("GameManager inicializado");
-    }
-    
-    public static GameManager getInstance() {
-        if (instance == null) {
-            instance = new GameManager();
-        }
-        return instance;
-    }
-    
     public void startGame() {
         gameRunning = true;
         gameOver = false;
@@ -51,6 +41,15 @@ class GameManager {
         }
     }
     
+    // Vuelve a un estado guardado (ver GameWorld.restoreSnapshot)
+    public void restore(int score, int level, int lives, boolean gameRunning, boolean gameOver) {
+        this.score = score;
+        this.level = level;
+        this.lives = lives;
+        this.gameRunning = gameRunning;
+        this.gameOver = gameOver;
+    }
+    
     // Getters
     public int getScore() { return score; }
     public int getLevel() { return level; }
@@ -59,6 +58,39 @@ class GameManager {
     public boolean isGameOver() { return gameOver; }
 }
 
+// Fachada única para la partida de un jugador que muestra la interfaz.
+// El resto del código recibe su GameState explícitamente (takeDamage, GameWorld)
+class GameManager {
+    private final GameState state = new GameState();
+    
+    private GameManager() {
+        System.out.println("GameManager inicializado");
+    }
+    
+    // Inicialización perezosa y segura entre hilos sin sincronizar cada llamada
+    private static class Holder {
+        static final GameManager INSTANCE = new GameManager();
+    }
+    
+    public static GameManager getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    public void startGame() { state.startGame(); }
+    public void endGame() { state.endGame(); }
+    public void addScore(int points) { state.addScore(points); }
+    public void nextLevel() { state.nextLevel(); }
+    public void loseLife() { state.loseLife(); }
+    
+    // Getters
+    public GameState getState() { return state; }
+    public int getScore() { return state.getScore(); }
+    public int getLevel() { return state.getLevel(); }
+    public int getLives() { return state.getLives(); }
+    public boolean isGameRunning() { return state.isGameRunning(); }
+    public boolean isGameOver() { return state.isGameOver(); }
+}
+
 // ==================== PATRÓN STRATEGY ====================
 // Estrategias de movimiento
 interface MovementStrategy {
@@ -128,215 +160,416 @@ class PlayerMovement implements MovementStrategy {
     public void setMoveRight(boolean moveRight) { this.moveRight = moveRight; }
 }
 
+// Movimiento de una oleada entera como una sola pieza: en cada tick todos los
+// invasores se desplazan lo mismo, así que su posición siempre es la de partida
+// más un desplazamiento común. La formación marcha en horizontal y, cuando su
+// caja envolvente llega a un borde, cambia de sentido y baja un escalón. La
+// caja solo se recalcula cuando cambian los miembros, no en cada tick
+class Formation {
+    private static final int DROP = 20;
+    
+    private int speed = 1;
+    private int direction = 1;
+    private int offsetX = 0;
+    private int offsetY = 0;
+    private int stepX, stepY; // desplazamiento del tick en curso
+    // Caja envolvente de los miembros, sin el desplazamiento
+    private int minX, maxX, maxY;
+    private boolean boundsValid = false;
+    
+    // Forma con los miembros en sus posiciones actuales
+    public void assign(java.util.List<? extends GameObject> members, int speed) {
+        restore(members, 0, 0, 1, speed);
+    }
+    
+    // Retoma un estado guardado con los miembros ya en sus posiciones
+    public void restore(java.util.List<? extends GameObject> members, int offsetX, int offsetY, int direction, int speed) {
+        this.speed = speed;
+        this.direction = direction;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        boundsValid = false;
+    }
+    
+    // Hay que llamarlo al quitar miembros de la lista
+    public void membersChanged() {
+        boundsValid = false;
+    }
+    
+    public void update(java.util.List<? extends GameObject> members) {
+        if (advance(members)) {
+            moveMembers(members, 0, members.size());
+        }
+    }
+    
+    // Calcula el desplazamiento del tick sin mover a nadie; false si no hay miembros
+    public boolean advance(java.util.List<? extends GameObject> members) {
+        if (members.isEmpty()) {
+            return false;
+        }
+        updateBounds(members);
+        
+        int nextOffsetX = offsetX + direction * speed;
+        if (minX + nextOffsetX < 0 || maxX + nextOffsetX > GameWorld.WIDTH) {
+            direction = -direction;
+            stepX = 0;
+            stepY = DROP;
+        } else {
+            stepX = nextOffsetX - offsetX;
+            stepY = 0;
+        }
+        offsetX += stepX;
+        offsetY += stepY;
+        return true;
+    }
+    
+    // Aplica a los miembros [from, to) el paso calculado en advance(); los
+    // tramos son independientes y pueden moverse en hilos distintos
+    public void moveMembers(java.util.List<? extends GameObject> members, int from, int to) {
+        for (int i = from; i < to; i++) {
+            members.get(i).moveInFormation(stepX, stepY);
+        }
+    }
+    
+    // Coordenada y (borde superior) del invasor más bajo
+    public int getLowestY(java.util.List<? extends GameObject> members) {
+        updateBounds(members);
+        return maxY + offsetY;
+    }
+    
+    // Los miembros tienen que estar en el desplazamiento actual
+    private void updateBounds(java.util.List<? extends GameObject> members) {
+        if (boundsValid) {
+            return;
+        }
+        minX = Integer.MAX_VALUE;
+        maxX = Integer.MIN_VALUE;
+        maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < members.size(); i++) {
+            GameObject member = members.get(i);
+            minX = Math.min(minX, member.getX() - offsetX);
+            maxX = Math.max(maxX, member.getX() - offsetX + member.getWidth());
+            maxY = Math.max(maxY, member.getY() - offsetY);
+        }
+        boundsValid = true;
+    }
+    
+    public int getOffsetX() { return offsetX; }
+    public int getOffsetY() { return offsetY; }
+    public int getDirection() { return direction; }
+    public int getSpeed() { return speed; }
+}
+
 // Estrategias de disparo
+// Las estrategias no crean listas: emiten cada bala en el destino que
+// pasa quien dispara (normalmente respaldado por un BulletPool)
+interface BulletSink {
+    void emit(int x, int y, int speed, Color color);
+}
+
 interface ShootingStrategy {
-    java.util.List<Bullet> shoot(int x, int y);
+    void shoot(int x, int y, BulletSink sink);
 }
 
 class SingleShot implements ShootingStrategy {
     @Override
-    public java.util.List<Bullet> shoot(int x, int y) {
-        java.util.List<Bullet> bullets = new ArrayList<>();
-        bullets.add(new Bullet(x, y, -5, Color.YELLOW));
-        return bullets;
+    public void shoot(int x, int y, BulletSink sink) {
+        sink.emit(x, y, -5, Color.YELLOW);
     }
 }
 
 class TripleShot implements ShootingStrategy {
     @Override
-    public java.util.List<Bullet> shoot(int x, int y) {
-        java.util.List<Bullet> bullets = new ArrayList<>();
-        bullets.add(new Bullet(x - 10, y, -5, Color.CYAN));
-        bullets.add(new Bullet(x, y, -5, Color.CYAN));
-        bullets.add(new Bullet(x + 10, y, -5, Color.CYAN));
-        return bullets;
+    public void shoot(int x, int y, BulletSink sink) {
+        sink.emit(x - 10, y, -5, Color.CYAN);
+        sink.emit(x, y, -5, Color.CYAN);
+        sink.emit(x + 10, y, -5, Color.CYAN);
     }
 }
 
 class EnemyShot implements ShootingStrategy {
     @Override
-    public java.util.List<Bullet> shoot(int x, int y) {
-        java.util.List<Bullet> bullets = new ArrayList<>();
-        bullets.add(new Bullet(x, y, 3, Color.RED));
-        return bullets;
+    public void shoot(int x, int y, BulletSink sink) {
+        sink.emit(x, y, 3, Color.RED);
     }
 }
 
 // ==================== PATRÓN FACTORY ====================
 // Clase base para objetos del juego
+// Solo guarda la posición; tamaño, color y movimiento los da cada subclase
 abstract class GameObject {
     protected int x, y;
-    protected int width, height;
-    protected Color color;
-    protected MovementStrategy movementStrategy;
+    protected int prevX, prevY; // posición al empezar el último tick (para interpolar)
     
-    public GameObject(int x, int y, int width, int height, Color color) {
+    public GameObject(int x, int y) {
         this.x = x;
         this.y = y;
-        this.width = width;
-        this.height = height;
-        this.color = color;
+        this.prevX = x;
+        this.prevY = y;
+    }
+    
+    // Guarda la posición actual como la del tick anterior
+    public void savePosition() {
+        prevX = x;
+        prevY = y;
+    }
+    
+    // Paso de la formación: todos los miembros se desplazan lo mismo
+    public void moveInFormation(int stepX, int stepY) {
+        prevX = x;
+        prevY = y;
+        x += stepX;
+        y += stepY;
+    }
+    
+    // Coloca el objeto tal como estaba en una instantánea
+    public void restorePosition(int x, int y, int prevX, int prevY) {
+        this.x = x;
+        this.y = y;
+        this.prevX = prevX;
+        this.prevY = prevY;
     }
     
+    // Los invasores no se mueven solos: los mueve Formation
     public void move() {
-        if (movementStrategy != null) {
-            movementStrategy.move(this);
-        }
     }
     
+    // Un único blit del sprite ya dibujado (ver SpriteCache)
     public void draw(Graphics g) {
-        g.setColor(color);
-        g.fillRect(x, y, width, height);
+        g.drawImage(SpriteCache.get(this), x, y, null);
+    }
+    
+    // Dibujo original de la figura en (x, y); SpriteCache lo usa una sola vez por tipo
+    protected abstract void paintShape(Graphics g, int x, int y);
+    
+    // Objetos con la misma clave comparten sprite
+    protected Object spriteKey() {
+        return getClass();
     }
     
     public Rectangle getBounds() {
-        return new Rectangle(x, y, width, height);
+        return new Rectangle(x, y, getWidth(), getHeight());
+    }
+    
+    // Intersección directa sobre los campos enteros, sin crear Rectangle.
+    // Misma semántica que getBounds().intersects(other.getBounds()), ya que
+    // todos los tamaños son constantes positivas
+    public boolean intersects(GameObject other) {
+        return other.x < x + getWidth() && x < other.x + other.getWidth()
+                && other.y < y + getHeight() && y < other.y + other.getHeight();
+    }
+    
+    // Choque continuo durante el último tick: los dos objetos van en línea recta
+    // de (prevX, prevY) a (x, y). Devuelve el instante (0..1) del primer
+    // contacto, o -1 si no llegan a tocarse. Un objeto rápido no puede
+    // atravesar a otro entre dos ticks; si al final se solapan, hay contacto
+    // (igual que con intersects)
+    public double sweptContact(GameObject other) {
+        int width = getWidth(), height = getHeight();
+        int otherWidth = other.getWidth(), otherHeight = other.getHeight();
+        // Descarte rápido con enteros: si las cajas de los dos recorridos no se
+        // solapan, tampoco pueden hacerlo los objetos en ningún instante
+        if (Math.max(x, prevX) + width <= Math.min(other.x, other.prevX)
+                || Math.max(other.x, other.prevX) + otherWidth <= Math.min(x, prevX)
+                || Math.max(y, prevY) + height <= Math.min(other.y, other.prevY)
+                || Math.max(other.y, other.prevY) + otherHeight <= Math.min(y, prevY)) {
+            return -1;
+        }
+        // Movimiento de este objeto visto desde el otro: x - other.x va de startX a startX + dx
+        int startX = prevX - other.prevX;
+        int startY = prevY - other.prevY;
+        int dx = (x - prevX) - (other.x - other.prevX);
+        int dy = (y - prevY) - (other.y - other.prevY);
+        // En cada eje se solapan mientras -width < x - other.x < other.width
+        double entry = Math.max(axisEntry(startX, dx, -width, otherWidth), axisEntry(startY, dy, -height, otherHeight));
+        double exit = Math.min(axisExit(startX, dx, -width, otherWidth), axisExit(startY, dy, -height, otherHeight));
+        if (entry < exit && entry < 1 && exit > 0) {
+            return Math.max(entry, 0);
+        }
+        return -1;
+    }
+    
+    // Instante en que start + d*t entra en (lo, hi); con d = 0, siempre o nunca
+    private static double axisEntry(int start, int d, int lo, int hi) {
+        if (d == 0) {
+            return lo < start && start < hi ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        return (double) ((d > 0 ? lo : hi) - start) / d;
+    }
+    
+    private static double axisExit(int start, int d, int lo, int hi) {
+        if (d == 0) {
+            return lo < start && start < hi ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        }
+        return (double) ((d > 0 ? hi : lo) - start) / d;
     }
     
     // Getters y Setters
     public int getX() { return x; }
     public int getY() { return y; }
+    public int getPrevX() { return prevX; }
+    public int getPrevY() { return prevY; }
     public void setX(int x) { this.x = x; }
     public void setY(int y) { this.y = y; }
-    public int getWidth() { return width; }
-    public int getHeight() { return height; }
-    public void setMovementStrategy(MovementStrategy strategy) { this.movementStrategy = strategy; }
+    public abstract int getWidth();
+    public abstract int getHeight();
 }
 
 // Enemigos específicos
-class SmallInvader extends GameObject {
-    private final ShootingStrategy shootingStrategy;
-    private int health = 1;
-    private final int points = 10;
-    
-    public SmallInvader(int x, int y) {
-        super(x, y, 30, 20, Color.GREEN);
-        this.movementStrategy = new LinearMovement(1);
-        shootingStrategy = new EnemyShot();
-    }
+// Flyweight: tamaño, color, vida inicial, puntos, arma y dibujo son comunes a
+// todos los invasores de un tipo y viven una sola vez en esta tabla
+enum InvaderType {
+    SMALL("small", 30, 20, Color.GREEN, 1, 10) {
+        @Override
+        void paint(Graphics g, int x, int y) {
+            paintBody(g, x, y);
+            // Dibujar "ojos"
+            g.setColor(Color.RED);
+            g.fillOval(x + 5, y + 5, 5, 5);
+            g.fillOval(x + 20, y + 5, 5, 5);
+        }
+    },
+    MEDIUM("medium", 40, 25, Color.BLUE, 2, 25) {
+        @Override
+        void paint(Graphics g, int x, int y) {
+            paintBody(g, x, y);
+            // Dibujar detalles
+            g.setColor(Color.YELLOW);
+            g.fillRect(x + 5, y + 5, 30, 15);
+            g.setColor(Color.RED);
+            g.fillOval(x + 10, y + 8, 4, 4);
+            g.fillOval(x + 26, y + 8, 4, 4);
+        }
+    },
+    LARGE("large", 50, 35, Color.RED, 3, 50) {
+        @Override
+        void paint(Graphics g, int x, int y) {
+            paintBody(g, x, y);
+            // Dibujar como boss
+            g.setColor(Color.ORANGE);
+            g.fillRect(x + 5, y + 5, 40, 25);
+            g.setColor(Color.YELLOW);
+            g.fillOval(x + 15, y + 10, 8, 8);
+            g.fillOval(x + 27, y + 10, 8, 8);
+        }
+    };
     
-    @Override
-    public void draw(Graphics g) {
-        g.setColor(color);
-        g.fillRect(x, y, width, height);
-        g.setColor(Color.BLACK);
-        g.drawRect(x, y, width, height);
-        // Dibujar "ojos"
-        g.setColor(Color.RED);
-        g.fillOval(x + 5, y + 5, 5, 5);
-        g.fillOval(x + 20, y + 5, 5, 5);
-    }
+    private static final InvaderType[] TYPES = values();
     
-    public java.util.List<Bullet> shoot() {
-        return shootingStrategy.shoot(x + width/2, y + height);
-    }
+    final String key; // nombre en minúsculas para byName
+    final int width;
+    final int height;
+    final Color color;
+    final int health;
+    final int points;
+    final ShootingStrategy shootingStrategy = new EnemyShot();
     
-    public boolean takeDamage() {
-        health--;
-        if (health <= 0) {
-            GameManager.getInstance().addScore(points);
-            return true; // Destruido
-        }
-        return false;
+    InvaderType(String key, int width, int height, Color color, int health, int points) {
+        this.key = key;
+        this.width = width;
+        this.height = height;
+        this.color = color;
+        this.health = health;
+        this.points = points;
     }
-}
-
-class MediumInvader extends GameObject {
-    private final ShootingStrategy shootingStrategy;
-    private int health = 2;
-    private final int points = 25;
     
-    public MediumInvader(int x, int y) {
-        super(x, y, 40, 25, Color.BLUE);
-        this.movementStrategy = new ZigzagMovement(1, 2);
-        shootingStrategy = new EnemyShot();
-    }
+    abstract void paint(Graphics g, int x, int y);
     
-    @Override
-    public void draw(Graphics g) {
+    void paintBody(Graphics g, int x, int y) {
         g.setColor(color);
         g.fillRect(x, y, width, height);
         g.setColor(Color.BLACK);
         g.drawRect(x, y, width, height);
-        // Dibujar detalles
-        g.setColor(Color.YELLOW);
-        g.fillRect(x + 5, y + 5, 30, 15);
-        g.setColor(Color.RED);
-        g.fillOval(x + 10, y + 8, 4, 4);
-        g.fillOval(x + 26, y + 8, 4, 4);
     }
     
-    public java.util.List<Bullet> shoot() {
-        return shootingStrategy.shoot(x + width/2, y + height);
+    public static InvaderType byIndex(int index) {
+        return TYPES[index];
     }
     
-    public boolean takeDamage() {
-        health--;
-        if (health <= 0) {
-            GameManager.getInstance().addScore(points);
-            return true;
+    // Tipos desconocidos se tratan como pequeños
+    public static InvaderType byName(String name) {
+        for (InvaderType type : TYPES) {
+            if (type.key.equalsIgnoreCase(name)) {
+                return type;
+            }
         }
-        return false;
+        return SMALL;
     }
 }
 
-class LargeInvader extends GameObject {
-    private final ShootingStrategy shootingStrategy;
-    private int health = 3;
-    private final int points = 50;
+// Un invasor añade su vida y su tipo a la posición que hereda de GameObject;
+// el resto lo lee de su InvaderType y a la oleada la mueve Formation: 40 B
+// por invasor
+class Invader extends GameObject {
+    private final InvaderType type;
+    private int health;
     
-    public LargeInvader(int x, int y) {
-        super(x, y, 50, 35, Color.RED);
-        this.movementStrategy = new LinearMovement(2);
-        shootingStrategy = new EnemyShot();
+    public Invader(InvaderType type, int x, int y) {
+        super(x, y);
+        this.type = type;
+        this.health = type.health;
     }
     
     @Override
-    public void draw(Graphics g) {
-        g.setColor(color);
-        g.fillRect(x, y, width, height);
-        g.setColor(Color.BLACK);
-        g.drawRect(x, y, width, height);
-        // Dibujar como boss
-        g.setColor(Color.ORANGE);
-        g.fillRect(x + 5, y + 5, 40, 25);
-        g.setColor(Color.YELLOW);
-        g.fillOval(x + 15, y + 10, 8, 8);
-        g.fillOval(x + 27, y + 10, 8, 8);
+    protected void paintShape(Graphics g, int x, int y) {
+        type.paint(g, x, y);
+    }
+    
+    // Todos los invasores de un tipo comparten sprite
+    @Override
+    protected Object spriteKey() {
+        return type;
     }
     
-    public java.util.List<Bullet> shoot() {
-        return shootingStrategy.shoot(x + width/2, y + height);
+    public void shoot(BulletSink sink) {
+        type.shootingStrategy.shoot(x + type.width/2, y + type.height, sink);
     }
     
-    public boolean takeDamage() {
+    public boolean takeDamage(GameState state) {
         health--;
         if (health <= 0) {
-            GameManager.getInstance().addScore(points);
-            return true;
+            state.addScore(type.points);
+            return true; // Destruido
         }
         return false;
     }
+    
+    @Override
+    public int getWidth() { return type.width; }
+    @Override
+    public int getHeight() { return type.height; }
+    public InvaderType getType() { return type; }
+    public int getHealth() { return health; }
+    public void setHealth(int health) { this.health = health; }
 }
 
 // Jugador
 class Player extends GameObject {
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 30;
+    
+    protected MovementStrategy movementStrategy;
     private ShootingStrategy shootingStrategy;
-    private long lastShot = 0;
     private final long shootCooldown = 200; // 200ms entre disparos
+    private long lastShot = -shootCooldown;
     
     public Player(int x, int y) {
-        super(x, y, 40, 30, Color.CYAN);
+        super(x, y);
         this.movementStrategy = new PlayerMovement(5);
         shootingStrategy = new SingleShot();
     }
     
     @Override
-    public void draw(Graphics g) {
-        g.setColor(color);
-        g.fillRect(x, y, width, height);
+    public void move() {
+        movementStrategy.move(this);
+    }
+    
+    @Override
+    protected void paintShape(Graphics g, int x, int y) {
+        g.setColor(Color.CYAN);
+        g.fillRect(x, y, WIDTH, HEIGHT);
         g.setColor(Color.BLACK);
-        g.drawRect(x, y, width, height);
+        g.drawRect(x, y, WIDTH, HEIGHT);
         // Dibujar detalles de nave
         g.setColor(Color.WHITE);
         g.fillRect(x + 15, y + 5, 10, 20);
@@ -344,13 +577,15 @@ class Player extends GameObject {
         g.fillOval(x + 17, y + 8, 6, 6);
     }
     
-    public java.util.List<Bullet> shoot() {
-        long currentTime = System.currentTimeMillis();
+    // Devuelve true si el disparo se realizó (no estaba en enfriamiento).
+    // El tiempo lo da el reloj de la simulación, no el reloj del sistema
+    public boolean shoot(long currentTime, BulletSink sink) {
         if (currentTime - lastShot >= shootCooldown) {
             lastShot = currentTime;
-            return shootingStrategy.shoot(x + width/2, y);
+            shootingStrategy.shoot(x + WIDTH/2, y, sink);
+            return true;
         }
-        return new ArrayList<>();
+        return false;
     }
     
     public void upgradeWeapon() {
@@ -360,20 +595,63 @@ class Player extends GameObject {
     public void resetWeapon() {
         shootingStrategy = new SingleShot();
     }
+    
+    @Override
+    public int getWidth() { return WIDTH; }
+    @Override
+    public int getHeight() { return HEIGHT; }
+    public void setMovementStrategy(MovementStrategy strategy) { this.movementStrategy = strategy; }
+    public boolean hasUpgradedWeapon() { return shootingStrategy instanceof TripleShot; }
+    public long getLastShot() { return lastShot; }
+    public void setLastShot(long lastShot) { this.lastShot = lastShot; }
 }
 
 // Bala
 class Bullet extends GameObject {
+    private static final int WIDTH = 4;
+    private static final int HEIGHT = 8;
+    
+    private int speed;
+    protected Color color;
     
     public Bullet(int x, int y, int speed, Color color) {
-        super(x, y, 4, 8, color);
-        this.movementStrategy = new LinearMovement(speed);
+        super(x, y);
+        this.speed = speed;
+        this.color = color;
+    }
+    
+    // Reutiliza la bala al sacarla del pool
+    public void reset(int x, int y, int speed, Color color) {
+        this.x = x;
+        this.y = y;
+        this.prevX = x;
+        this.prevY = y;
+        this.speed = speed;
+        this.color = color;
     }
     
+    // Movimiento lineal sin un objeto LinearMovement propio por bala
     @Override
-    public void draw(Graphics g) {
+    public void move() {
+        y += speed;
+    }
+    
+    public int getSpeed() { return speed; }
+    @Override
+    public int getWidth() { return WIDTH; }
+    @Override
+    public int getHeight() { return HEIGHT; }
+    
+    @Override
+    protected void paintShape(Graphics g, int x, int y) {
         g.setColor(color);
-        g.fillOval(x, y, width, height);
+        g.fillOval(x, y, WIDTH, HEIGHT);
+    }
+    
+    // Las balas comparten forma y se distinguen solo por el color
+    @Override
+    protected Object spriteKey() {
+        return color;
     }
     
     public boolean isOffScreen() {
@@ -381,270 +659,3360 @@ class Bullet extends GameObject {
     }
 }
 
+// Pool acotado de balas: las balas muertas se reciclan en lugar de
+// dejarlas al recolector de basura
+class BulletPool {
+    private final Bullet[] free;
+    private int freeCount = 0;
+    
+    public BulletPool(int capacity) {
+        free = new Bullet[capacity];
+    }
+    
+    // Pool con todas sus balas ya creadas: acquire no asigna hasta agotarlas
+    public static BulletPool filled(int capacity) {
+        BulletPool pool = new BulletPool(capacity);
+        for (int i = 0; i < capacity; i++) {
+            pool.release(new Bullet(0, 0, 0, Color.YELLOW));
+        }
+        return pool;
+    }
+    
+    public Bullet acquire(int x, int y, int speed, Color color) {
+        if (freeCount == 0) {
+            return new Bullet(x, y, speed, color);
+        }
+        Bullet bullet = free[--freeCount];
+        free[freeCount] = null;
+        bullet.reset(x, y, speed, color);
+        return bullet;
+    }
+    
+    // Si el pool está lleno la bala simplemente se descarta
+    public void release(Bullet bullet) {
+        if (freeCount < free.length) {
+            free[freeCount++] = bullet;
+        }
+    }
+    
+    public int getFreeCount() { return freeCount; }
+}
+
+// Destino que toma las balas del pool y las añade a una lista del juego
+class PooledBulletSink implements BulletSink {
+    private final BulletPool pool;
+    private final java.util.List<Bullet> target;
+    
+    public PooledBulletSink(BulletPool pool, java.util.List<Bullet> target) {
+        this.pool = pool;
+        this.target = target;
+    }
+    
+    @Override
+    public void emit(int x, int y, int speed, Color color) {
+        target.add(pool.acquire(x, y, speed, color));
+    }
+}
+
+// Caché de sprites: cada tipo de entidad se dibuja una vez en una imagen
+// compatible con la pantalla y después cada draw() es un solo drawImage.
+// Java2D guarda estas imágenes gestionadas en la memoria de vídeo y las
+// restaura solo si se pierden. Se usa desde el hilo que dibuja
+class SpriteCache {
+    private static final Map<Object, Image> sprites = new HashMap<>();
+    
+    public static Image get(GameObject object) {
+        Image sprite = sprites.get(object.spriteKey());
+        if (sprite == null) {
+            sprite = render(object);
+            sprites.put(object.spriteKey(), sprite);
+        }
+        return sprite;
+    }
+    
+    // Vacía la caché (p. ej. si cambia la configuración de pantalla)
+    public static void clear() {
+        sprites.clear();
+    }
+    
+    private static Image render(GameObject object) {
+        // +1 porque drawRect ocupa un píxel más que el ancho y alto del objeto
+        int width = object.getWidth() + 1;
+        int height = object.getHeight() + 1;
+        java.awt.image.BufferedImage image;
+        if (GraphicsEnvironment.isHeadless()) {
+            image = new java.awt.image.BufferedImage(width, height, java.awt.image.BufferedImage.TYPE_INT_ARGB);
+        } else {
+            image = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDefaultConfiguration().createCompatibleImage(width, height, Transparency.BITMASK);
+        }
+        Graphics g = image.getGraphics();
+        object.paintShape(g, 0, 0);
+        g.dispose();
+        return image;
+    }
+}
+
 // Fábrica de enemigos
 class InvaderFactory {
-    public static GameObject createInvader(String type, int x, int y) {
-        return switch (type.toLowerCase()) {
-            case "small" -> new SmallInvader(x, y);
-            case "medium" -> new MediumInvader(x, y);
-            case "large" -> new LargeInvader(x, y);
-            default -> new SmallInvader(x, y);
-        };
+    public static Invader createInvader(String type, int x, int y) {
+        return new Invader(InvaderType.byName(type), x, y);
     }
     
-    public static java.util.List<GameObject> createWave(int level) {
-        java.util.List<GameObject> enemies = new ArrayList<>();
+    public static java.util.List<Invader> createWave(int level) {
+        java.util.List<Invader> enemies = new ArrayList<>();
         int enemyCount = Math.min(5 + level, 15);
         
         for (int i = 0; i < enemyCount; i++) {
             int x = 50 + (i % 10) * 70;
             int y = 50 + (i / 10) * 60;
-            
-            GameObject enemy;
-            if (level <= 2) {
-                enemy = createInvader("small", x, y);
-            } else if (level <= 4) {
-                enemy = createInvader(i % 2 == 0 ? "small" : "medium", x, y);
-            } else {
-                String[] types = {"small", "medium", "large"};
-                enemy = createInvader(types[i % 3], x, y);
-            }
-            
-            enemies.add(enemy);
+            enemies.add(new Invader(typeFor(level, i), x, y));
         }
         
         return enemies;
     }
-}
-
-// ==================== PANEL PRINCIPAL DEL JUEGO ====================
-class GamePanel extends JPanel implements ActionListener, KeyListener {
-    private final javax.swing.Timer gameTimer;
-    private Player player;
-    private java.util.List<GameObject> enemies;
-    private java.util.List<Bullet> bullets;
-    private java.util.List<Bullet> enemyBullets;
-    private long lastEnemyShot = 0;
-    private final boolean[] keys = new boolean[256];
     
-    public GamePanel() {
-        setPreferredSize(new Dimension(800, 600));
-        setBackground(Color.BLACK);
-        setFocusable(true);
+    // Oleada de cualquier tamaño (pruebas de carga): reparte los invasores en
+    // una rejilla que cubre el área dada (posiciones de la esquina superior
+    // izquierda) con tantas columnas como pida la proporción del área
+    public static java.util.List<Invader> createWave(int level, int enemyCount, Rectangle area) {
+        java.util.List<Invader> enemies = new ArrayList<>(enemyCount);
+        int cols = Math.max(1, (int) Math.ceil(Math.sqrt((double) enemyCount * area.width / area.height)));
+        int rows = Math.max(1, (enemyCount + cols - 1) / cols);
+        double cellWidth = (double) area.width / cols;
+        double cellHeight = (double) area.height / rows;
         
-        initGame();
-        
-        gameTimer = new javax.swing.Timer(16, this); // ~60 FPS
-        gameTimer.start();
+        for (int i = 0; i < enemyCount; i++) {
+            int x = area.x + (int) ((i % cols) * cellWidth);
+            int y = area.y + (int) ((i / cols) * cellHeight);
+            enemies.add(new Invader(typeFor(level, i), x, y));
+        }
         
-        // Add key listener after construction is complete
-        SwingUtilities.invokeLater(() -> addKeyListener(this));
+        return enemies;
     }
     
-    private void initGame() {
-        GameManager.getInstance().startGame();
-        player = new Player(375, 550);
-        enemies = new ArrayList<>();
-        bullets = new ArrayList<>();
-        enemyBullets = new ArrayList<>();
-        
-        // Crear primera oleada
-        enemies.addAll(InvaderFactory.createWave(1));
+    // Niveles 1-2: solo pequeños; 3-4: pequeños y medianos; 5+: los tres tipos
+    private static InvaderType typeFor(int level, int index) {
+        if (level <= 2) {
+            return InvaderType.SMALL;
+        } else if (level <= 4) {
+            return index % 2 == 0 ? InvaderType.SMALL : InvaderType.MEDIUM;
+        }
+        return InvaderType.byIndex(index % 3);
+    }
+}
+
+// ==================== DETECCIÓN DE COLISIONES ====================
+// Rejilla uniforme sobre el área de juego (800x600) para la fase amplia:
+// cada bala solo se compara con los objetos de las celdas que ocupa. Cada
+// objeto se registra en todas las celdas que barrió en el último tick (de su
+// posición anterior a la actual), así el choque continuo no se pierde ninguno
+class SpatialGrid {
+    public static final int CELL_SIZE = 64;
+    
+    private final int cols;
+    private final int rows;
+    // Celdas en formato compacto: los índices de la celda c están en
+    // entries[cellStart[c] .. cellStart[c + 1]) en orden creciente
+    private final int[] cellStart;
+    private final int[] cellFill;
+    private int[] entries = new int[64];
+    private GameObject[] objects = new GameObject[16];
+    private int objectCount = 0;
+    // Reconstrucción paralela: conteos por tramo de objetos (ver rebuildParallel)
+    private int[][] partCounts = new int[0][];
+    private int parts, partSize;
+    private java.util.List<? extends GameObject> source;
+    private final ParallelRange.Body countParts = this::countParts;
+    private final ParallelRange.Body fillParts = this::fillParts;
+    
+    public SpatialGrid(int width, int height) {
+        cols = (width + CELL_SIZE - 1) / CELL_SIZE;
+        rows = (height + CELL_SIZE - 1) / CELL_SIZE;
+        cellStart = new int[cols * rows + 1];
+        cellFill = new int[cols * rows];
     }
     
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        
-        if (!GameManager.getInstance().isGameRunning()) {
-            drawGameOverScreen(g);
+    // Reserva sitio para count objetos; así el primer tick tras crear una
+    // oleada no asigna memoria
+    public void reserve(int count) {
+        if (objects.length < count) {
+            objects = Arrays.copyOf(objects, Math.max(count, objects.length * 2));
+            // Un objeto barre como mucho 2x2 celdas por tick: así entries no
+            // tiene que crecer en los ticks en que la formación baja
+            if (entries.length < objects.length * 4) {
+                entries = new int[objects.length * 4];
+            }
+        }
+    }
+    
+    // Reconstruye la rejilla con las posiciones actuales (se llama una vez por tick)
+    public void rebuild(java.util.List<? extends GameObject> list) {
+        rebuild(list, null);
+    }
+    
+    // Con un pool, el conteo y el reparto se hacen por tramos en paralelo;
+    // las entradas quedan exactamente igual que en secuencial
+    public void rebuild(java.util.List<? extends GameObject> list, java.util.concurrent.ForkJoinPool pool) {
+        int previousCount = objectCount;
+        objectCount = list.size();
+        reserve(objectCount);
+        if (previousCount > objectCount) {
+            Arrays.fill(objects, objectCount, previousCount, null);
+        }
+        if (pool != null) {
+            rebuildParallel(list, pool);
             return;
         }
         
-        // Dibujar todos los objetos
-        player.draw(g);
-        
-        for (GameObject enemy : enemies) {
-            enemy.draw(g);
+        // Primera pasada: contar entradas por celda
+        Arrays.fill(cellStart, 0);
+        for (int i = 0; i < objectCount; i++) {
+            GameObject object = list.get(i);
+            objects[i] = object;
+            int c0 = firstCol(object), c1 = lastCol(object);
+            int r0 = firstRow(object), r1 = lastRow(object);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    cellStart[r * cols + c + 1]++;
+                }
+            }
         }
-        
-        for (Bullet bullet : bullets) {
-            bullet.draw(g);
+        for (int cell = 0; cell < cols * rows; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
         }
-        
-        for (Bullet bullet : enemyBullets) {
-            bullet.draw(g);
+        if (entries.length < cellStart[cols * rows]) {
+            entries = new int[Math.max(cellStart[cols * rows], entries.length * 2)];
         }
         
-        // Dibujar UI
-        drawUI(g);
-    }
-    
-    private void drawUI(Graphics g) {
-        g.setColor(Color.WHITE);
-        g.setFont(new Font("Arial", Font.BOLD, 16));
-        g.drawString("Puntuacion: " + GameManager.getInstance().getScore(), 10, 25);
-        g.drawString("Nivel: " + GameManager.getInstance().getLevel(), 10, 45);
-        g.drawString("Vidas: " + GameManager.getInstance().getLives(), 10, 65);
-        g.drawString("Controles: A/D o Flechas = Mover, ESPACIO = Disparar", 10, 85);
+        // Segunda pasada: repartir los índices (quedan ordenados dentro de cada celda)
+        Arrays.fill(cellFill, 0);
+        for (int i = 0; i < objectCount; i++) {
+            GameObject object = objects[i];
+            int c0 = firstCol(object), c1 = lastCol(object);
+            int r0 = firstRow(object), r1 = lastRow(object);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    int cell = r * cols + c;
+                    entries[cellStart[cell] + cellFill[cell]++] = i;
+                }
+            }
+        }
+    }
+    
+    // Cada tramo de objetos cuenta sus celdas por separado; la suma de
+    // prefijos recorre las celdas y, dentro de cada una, los tramos en orden,
+    // así cada tramo escribe en su propio hueco y los índices siguen ordenados
+    private void rebuildParallel(java.util.List<? extends GameObject> list, java.util.concurrent.ForkJoinPool pool) {
+        int cells = cols * rows;
+        parts = pool.getParallelism() * 4;
+        if (partCounts.length < parts) {
+            partCounts = new int[parts][cells];
+        }
+        partSize = (objectCount + parts - 1) / parts;
+        source = list;
+        ParallelRange.run(pool, parts, 1, countParts);
+        source = null;
+        
+        int total = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            cellStart[cell] = total;
+            for (int part = 0; part < parts; part++) {
+                int count = partCounts[part][cell];
+                partCounts[part][cell] = total; // desde aquí escribe el tramo
+                total += count;
+            }
+        }
+        cellStart[cells] = total;
+        if (entries.length < total) {
+            entries = new int[Math.max(total, entries.length * 2)];
+        }
+        ParallelRange.run(pool, parts, 1, fillParts);
+    }
+    
+    private void countParts(int fromPart, int toPart) {
+        for (int part = fromPart; part < toPart; part++) {
+            int[] counts = partCounts[part];
+            Arrays.fill(counts, 0);
+            int end = Math.min(objectCount, (part + 1) * partSize);
+            for (int i = part * partSize; i < end; i++) {
+                GameObject object = source.get(i);
+                objects[i] = object;
+                int c0 = firstCol(object), c1 = lastCol(object);
+                int r0 = firstRow(object), r1 = lastRow(object);
+                for (int r = r0; r <= r1; r++) {
+                    for (int c = c0; c <= c1; c++) {
+                        counts[r * cols + c]++;
+                    }
+                }
+            }
+        }
+    }
+    
+    private void fillParts(int fromPart, int toPart) {
+        for (int part = fromPart; part < toPart; part++) {
+            int[] next = partCounts[part];
+            int end = Math.min(objectCount, (part + 1) * partSize);
+            for (int i = part * partSize; i < end; i++) {
+                GameObject object = objects[i];
+                int c0 = firstCol(object), c1 = lastCol(object);
+                int r0 = firstRow(object), r1 = lastRow(object);
+                for (int r = r0; r <= r1; r++) {
+                    for (int c = c0; c <= c1; c++) {
+                        entries[next[r * cols + c]++] = i;
+                    }
+                }
+            }
+        }
+    }
+    
+    // Devuelve el objeto vivo que el dado toca primero durante el último tick
+    // (choque continuo, ver GameObject.sweptContact), o -1. A igual instante
+    // gana el índice más bajo (orden de la lista)
+    public int firstHit(GameObject probe) {
+        int best = -1;
+        double bestTime = 2;
+        int c0 = firstCol(probe), c1 = lastCol(probe);
+        int r0 = firstRow(probe), r1 = lastRow(probe);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * cols + c;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int index = entries[k];
+                    if (bestTime == 0 && index >= best) {
+                        break; // nada de esta celda puede ganar ya
+                    }
+                    GameObject object = objects[index];
+                    if (object == null) {
+                        continue;
+                    }
+                    double time = probe.sweptContact(object);
+                    if (time >= 0 && (time < bestTime || (time == bestTime && index < best))) {
+                        best = index;
+                        bestTime = time;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+    
+    public GameObject get(int index) { return objects[index]; }
+    public boolean isRemoved(int index) { return objects[index] == null; }
+    
+    // Marca un objeto como eliminado sin reconstruir la rejilla
+    public void remove(int index) {
+        objects[index] = null;
+    }
+    
+    // Celdas que cubre el recorrido del objeto en el último tick
+    private int firstCol(GameObject object) {
+        return col(Math.min(object.getPrevX(), object.getX()));
+    }
+    
+    private int lastCol(GameObject object) {
+        return col(Math.max(object.getPrevX(), object.getX()) + object.getWidth() - 1);
+    }
+    
+    private int firstRow(GameObject object) {
+        return row(Math.min(object.getPrevY(), object.getY()));
+    }
+    
+    private int lastRow(GameObject object) {
+        return row(Math.max(object.getPrevY(), object.getY()) + object.getHeight() - 1);
+    }
+    
+    // Los objetos fuera del área se asignan a las celdas del borde
+    private int col(int x) {
+        return Math.max(0, Math.min(cols - 1, Math.floorDiv(x, CELL_SIZE)));
+    }
+    
+    private int row(int y) {
+        return Math.max(0, Math.min(rows - 1, Math.floorDiv(y, CELL_SIZE)));
+    }
+}
+
+// ==================== ALMACENAMIENTO COMPACTO DE ENTIDADES ====================
+// Almacén opcional en formato "struct of arrays": cada atributo vive en su
+// propio int[] y la entidad i ocupa la posición i de todos ellos. Los pases de
+// balas y de colisión recorren los arreglos en orden sin seguir punteros. Los
+// invasores no se mueven aquí: en el juego los mueve Formation
+class EntityStore {
+    // Los invasores usan el ordinal de su InvaderType como tipo
+    public static final int TYPE_SMALL = InvaderType.SMALL.ordinal();
+    public static final int TYPE_MEDIUM = InvaderType.MEDIUM.ordinal();
+    public static final int TYPE_LARGE = InvaderType.LARGE.ordinal();
+    public static final int TYPE_BULLET = InvaderType.values().length;
+    
+    // Puntos por tipo, copiados de InvaderType; las balas no dan puntos
+    private static final int[] POINTS = new int[TYPE_BULLET + 1];
+    static {
+        for (InvaderType invaderType : InvaderType.values()) {
+            POINTS[invaderType.ordinal()] = invaderType.points;
+        }
+    }
+    
+    private int[] x, y, width, height, vy, health, type;
+    private long[] offScreen; // marcas de moveBullets (un bit por bala)
+    private int size = 0;
+    
+    public EntityStore(int capacity) {
+        capacity = Math.max(capacity, 16);
+        x = new int[capacity];
+        y = new int[capacity];
+        width = new int[capacity];
+        height = new int[capacity];
+        vy = new int[capacity];
+        health = new int[capacity];
+        type = new int[capacity];
+        offScreen = new long[(capacity + 63) >>> 6];
+    }
+    
+    public int add(int entityType, int px, int py, int w, int h, int velocityY, int hp) {
+        if (size == x.length) {
+            grow();
+        }
+        int i = size++;
+        x[i] = px;
+        y[i] = py;
+        width[i] = w;
+        height[i] = h;
+        vy[i] = velocityY;
+        health[i] = hp;
+        type[i] = entityType;
+        return i;
+    }
+    
+    // Tamaño y vida salen de InvaderType, como en los Invader de InvaderFactory
+    public int addInvader(String invaderType, int px, int py) {
+        InvaderType invader = InvaderType.byName(invaderType);
+        return add(invader.ordinal(), px, py, invader.width, invader.height, 0, invader.health);
+    }
+    
+    public int addBullet(int px, int py, int speed) {
+        return add(TYPE_BULLET, px, py, 4, 8, speed, 1);
+    }
+    
+    // Borrado O(1): la última entidad pasa a ocupar el hueco (no conserva el orden)
+    public void remove(int i) {
+        int last = --size;
+        x[i] = x[last];
+        y[i] = y[last];
+        width[i] = width[last];
+        height[i] = height[last];
+        vy[i] = vy[last];
+        health[i] = health[last];
+        type[i] = type[last];
+    }
+    
+    // Pase de movimiento de las balas: solo en vertical, como Bullet.move
+    public void move() {
+        for (int i = 0; i < size; i++) {
+            y[i] += vy[i];
+        }
+    }
+    
+    // Quita las balas fuera de la pantalla (mismo criterio que Bullet.isOffScreen)
+    public void removeOffScreen(int screenHeight) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (y[i] < 0 || y[i] > screenHeight) {
+                remove(i);
+            }
+        }
+    }
+    
+    // Pase de balas para almacenes que solo contienen balas: el núcleo avanza
+    // todas las y de golpe y después se quitan las marcadas
+    public void moveBullets(BulletKernel kernel, int screenHeight) {
+        int words = (size + 63) >>> 6;
+        if (kernel.advance(y, vy, size, screenHeight, offScreen) == 0) {
+            return;
+        }
+        // De la última a la primera, como removeOffScreen
+        for (int w = words - 1; w >= 0; w--) {
+            long bits = offScreen[w];
+            while (bits != 0) {
+                int bit = 63 - Long.numberOfLeadingZeros(bits);
+                remove(w * 64 + bit);
+                bits &= ~(1L << bit);
+            }
+        }
+    }
+    
+    // Pase de colisión bala-enemigo: cada bala daña al primer enemigo que toca
+    // y desaparece. Devuelve los puntos de los enemigos destruidos
+    public static int collide(EntityStore bullets, EntityStore enemies) {
+        int points = 0;
+        int[] ex = enemies.x, ey = enemies.y, ew = enemies.width, eh = enemies.height;
+        for (int b = bullets.size - 1; b >= 0; b--) {
+            int bx = bullets.x[b], by = bullets.y[b];
+            int bw = bullets.width[b], bh = bullets.height[b];
+            int enemyCount = enemies.size;
+            for (int e = 0; e < enemyCount; e++) {
+                if (ex[e] < bx + bw && bx < ex[e] + ew[e] && ey[e] < by + bh && by < ey[e] + eh[e]) {
+                    if (--enemies.health[e] <= 0) {
+                        points += POINTS[enemies.type[e]];
+                        enemies.remove(e);
+                    }
+                    bullets.remove(b);
+                    break;
+                }
+            }
+        }
+        return points;
+    }
+    
+    private void grow() {
+        int capacity = x.length * 2;
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        width = Arrays.copyOf(width, capacity);
+        height = Arrays.copyOf(height, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        health = Arrays.copyOf(health, capacity);
+        type = Arrays.copyOf(type, capacity);
+        offScreen = new long[(capacity + 63) >>> 6];
+    }
+    
+    // Getters
+    public int size() { return size; }
+    public int getX(int i) { return x[i]; }
+    public int getY(int i) { return y[i]; }
+    public int getWidth(int i) { return width[i]; }
+    public int getHeight(int i) { return height[i]; }
+    public int getHealth(int i) { return health[i]; }
+    public int getType(int i) { return type[i]; }
+}
+
+// El pase de balas de moveBullets está en BulletKernel.java y
+// ScalarBulletKernel.java: VectorBulletKernel.java, que se compila aparte,
+// también los usa y no puede depender de clases auxiliares de este archivo
+
+// ==================== MOTOR DE SIMULACIÓN ====================
+// Toda la lógica del juego, sin Swing: avanza en pasos fijos de TICK_MILLIS
+// y puede ejecutarse sin pantalla tan rápido como permita la CPU
+class GameWorld {
+    public static final int WIDTH = 800;
+    public static final int HEIGHT = 600;
+    public static final int TICK_MILLIS = 16; // dt fijo (~60 ticks por segundo)
+    private static final long ENEMY_SHOT_INTERVAL = 1000;
+    
+    private final GameState state;
+    // Generador con semilla: la misma semilla y la misma entrada dan la misma partida
+    private long seed;
+    private final GameRandom random = new GameRandom();
+    private int gamesStarted = 0;
+    private Player player;
+    private final java.util.List<Invader> enemies = new ArrayList<>();
+    // Capacidad fija desde el principio: crecer durante la partida asignaría memoria
+    private static final int BULLET_CAPACITY = 256;
+    private final java.util.List<Bullet> bullets = new ArrayList<>(BULLET_CAPACITY);
+    private final java.util.List<Bullet> enemyBullets = new ArrayList<>(BULLET_CAPACITY);
+    private final BulletPool bulletPool = BulletPool.filled(BULLET_CAPACITY);
+    private final BulletSink playerBulletSink = new PooledBulletSink(bulletPool, bullets);
+    private final BulletSink enemyBulletSink = new PooledBulletSink(bulletPool, enemyBullets);
+    private final SpatialGrid enemyGrid = new SpatialGrid(WIDTH, HEIGHT);
+    private final Formation formation = new Formation(); // mueve a todos los enemigos a la vez
+    
+    // Tick paralelo opcional (null: todo en el hilo que llama a step())
+    private java.util.concurrent.ForkJoinPool pool;
+    private int[] hitCandidates = new int[64];
+    private final ParallelRange.Body moveEnemies = (from, to) -> formation.moveMembers(enemies, from, to);
+    private final ParallelRange.Body findHits = this::findHitCandidates;
+    
+    // Reloj de simulación en ticks: solo avanza con step()
+    private long tick;
+    private long lastEnemyShot;
+    
+    // Entrada del jugador para el próximo tick
+    private boolean moveLeft = false;
+    private boolean moveRight = false;
+    private boolean fireRequested = false;
+    
+    public GameWorld(GameState state) {
+        this(state, System.nanoTime());
+    }
+    
+    public GameWorld(GameState state, long seed) {
+        this.state = state;
+        this.seed = seed;
+        reset();
+    }
+    
+    public void reset() {
+        // Cada partida de la sesión tiene su propia secuencia, derivada de la semilla
+        random.setSeed(seed + gamesStarted++ * 0x9E3779B97F4A7C15L);
+        state.startGame();
+        player = new Player(375, 550);
+        enemies.clear();
+        releaseAll(bullets);
+        releaseAll(enemyBullets);
+        tick = 0;
+        lastEnemyShot = -ENEMY_SHOT_INTERVAL - 1; // el primer disparo sale en el primer tick
+        moveLeft = false;
+        moveRight = false;
+        fireRequested = false;
+        
+        // Crear primera oleada
+        setWave(InvaderFactory.createWave(1));
+    }
+    
+    // Sustituye los enemigos por una oleada nueva, que marcha como una formación
+    public void setWave(java.util.List<Invader> wave) {
+        enemies.clear();
+        enemies.addAll(wave);
+        enemyGrid.reserve(enemies.size());
+        formation.assign(enemies, formationSpeed(state.getLevel()));
+    }
+    
+    // Velocidad horizontal de la formación según el nivel
+    private static int formationSpeed(int level) {
+        return Math.min(1 + level, 8);
+    }
+    
+    // Avanza la simulación exactamente un paso de TICK_MILLIS. Una partida
+    // terminada no avanza: solo reset() (o la entrada RESTART) la reanuda
+    public void step() {
+        if (!state.isGameRunning()) {
+            return;
+        }
+        
+        // Recordar las posiciones de partida para poder interpolar al dibujar
+        // (los enemigos lo hacen al moverse con la formación)
+        player.savePosition();
+        for (int i = 0; i < bullets.size(); i++) {
+            bullets.get(i).savePosition();
+        }
+        for (int i = 0; i < enemyBullets.size(); i++) {
+            enemyBullets.get(i).savePosition();
+        }
+        
+        // Aplicar la entrada del jugador
+        PlayerMovement playerMovement = (PlayerMovement) player.movementStrategy;
+        playerMovement.setMoveLeft(moveLeft);
+        playerMovement.setMoveRight(moveRight);
+        
+        if (fireRequested) {
+            player.shoot(getElapsedMillis(), playerBulletSink);
+            fireRequested = false;
+        }
+        
+        // Mover jugador
+        player.move();
+        
+        // Mover enemigos: un solo paso para toda la oleada
+        if (isParallel()) {
+            if (formation.advance(enemies)) {
+                ParallelRange.run(pool, enemies.size(), moveEnemies);
+            }
+        } else {
+            formation.update(enemies);
+        }
+        
+        // Mover balas
+        for (int i = 0; i < bullets.size(); i++) {
+            bullets.get(i).move();
+        }
+        
+        for (int i = 0; i < enemyBullets.size(); i++) {
+            enemyBullets.get(i).move();
+        }
+        
+        // Disparos enemigos
+        if (getElapsedMillis() - lastEnemyShot > ENEMY_SHOT_INTERVAL && !enemies.isEmpty()) { // Cada segundo
+            int randomEnemy = random.nextInt(enemies.size());
+            enemies.get(randomEnemy).shoot(enemyBulletSink);
+            
+            lastEnemyShot = getElapsedMillis();
+        }
+        
+        // Colisiones bala-enemigo (fase amplia con la rejilla espacial)
+        enemyGrid.rebuild(enemies, isParallel() ? pool : null);
+        boolean parallelHits = isParallel();
+        if (parallelHits) {
+            if (hitCandidates.length < bullets.size()) {
+                hitCandidates = new int[Math.max(bullets.size(), hitCandidates.length * 2)];
+            }
+            ParallelRange.run(pool, bullets.size(), findHits);
+        }
+        boolean enemiesDestroyed = false;
+        int keptBullets = 0;
+        for (int i = 0; i < bullets.size(); i++) {
+            Bullet bullet = bullets.get(i);
+            
+            // Choque continuo antes de descartar las que salieron: una bala
+            // puede alcanzar a un enemigo en el mismo tick en que sale
+            int hit;
+            if (parallelHits) {
+                // Si una bala anterior ya destruyó al candidato se busca el siguiente
+                hit = hitCandidates[i];
+                if (hit >= 0 && enemyGrid.isRemoved(hit)) {
+                    hit = enemyGrid.firstHit(bullet);
+                }
+            } else {
+                hit = enemyGrid.firstHit(bullet);
+            }
+            if (hit >= 0) {
+                // La rejilla se construyó sobre enemies: el índice es el de la lista
+                if (enemies.get(hit).takeDamage(state)) {
+                    enemyGrid.remove(hit);
+                    enemiesDestroyed = true;
+                }
+                bulletPool.release(bullet);
+                continue;
+            }
+            
+            if (bullet.isOffScreen()) {
+                bulletPool.release(bullet);
+                continue;
+            }
+            
+            bullets.set(keptBullets++, bullet);
+        }
+        truncate(bullets, keptBullets);
+        
+        // Quitar de la lista los enemigos destruidos conservando el orden
+        if (enemiesDestroyed) {
+            int alive = 0;
+            for (int i = 0; i < enemies.size(); i++) {
+                if (!enemyGrid.isRemoved(i)) {
+                    enemies.set(alive++, enemies.get(i));
+                }
+            }
+            truncate(enemies, alive);
+            formation.membersChanged();
+        }
+        
+        // Colisiones bala enemiga-jugador
+        int keptEnemyBullets = 0;
+        int next = 0;
+        while (next < enemyBullets.size()) {
+            Bullet bullet = enemyBullets.get(next++);
+            
+            if (bullet.sweptContact(player) >= 0) {
+                bulletPool.release(bullet);
+                state.loseLife();
+                break;
+            }
+            
+            if (bullet.isOffScreen()) {
+                bulletPool.release(bullet);
+                continue;
+            }
+            
+            enemyBullets.set(keptEnemyBullets++, bullet);
+        }
+        // Tras el impacto, las balas restantes se conservan sin revisar (como antes)
+        while (next < enemyBullets.size()) {
+            enemyBullets.set(keptEnemyBullets++, enemyBullets.get(next++));
+        }
+        truncate(enemyBullets, keptEnemyBullets);
+        
+        // Verificar si todos los enemigos han sido destruidos
+        if (enemies.isEmpty()) {
+            state.nextLevel();
+            setWave(InvaderFactory.createWave(state.getLevel()));
+            
+            // Mejorar arma cada 3 niveles
+            if (state.getLevel() % 3 == 0) {
+                player.upgradeWeapon();
+            }
+        }
+        
+        // Verificar si algún enemigo llegó al fondo (basta con la fila más baja)
+        if (!enemies.isEmpty() && formation.getLowestY(enemies) > 500) {
+            state.loseLife();
+        }
+        
+        tick++;
+    }
+    
+    // Aplica la entrada de un tick codificada como máscara de InputLog
+    public void applyInput(int mask) {
+        if ((mask & InputLog.RESTART) != 0) {
+            reset();
+        }
+        moveLeft = (mask & InputLog.LEFT) != 0;
+        moveRight = (mask & InputLog.RIGHT) != 0;
+        if ((mask & InputLog.FIRE) != 0) {
+            fireRequested = true;
+        }
+    }
+    
+    // Resumen del estado completo para comprobar que una repetición es exacta
+    public long checksum() {
+        long hash = tick;
+        hash = hash * 31 + state.getScore();
+        hash = hash * 31 + state.getLevel();
+        hash = hash * 31 + state.getLives();
+        hash = hash * 31 + player.getX();
+        hash = hash * 31 + player.getY();
+        for (int i = 0; i < enemies.size(); i++) {
+            hash = hash * 31 + enemies.get(i).getX();
+            hash = hash * 31 + enemies.get(i).getY();
+        }
+        for (int i = 0; i < bullets.size(); i++) {
+            hash = hash * 31 + bullets.get(i).getX();
+            hash = hash * 31 + bullets.get(i).getY();
+        }
+        for (int i = 0; i < enemyBullets.size(); i++) {
+            hash = hash * 31 + enemyBullets.get(i).getX();
+            hash = hash * 31 + enemyBullets.get(i).getY();
+        }
+        return hash;
+    }
+    
+    // ---- Instantáneas binarias ----
+    // Formato (big endian, versión 2; la 1 no guardaba la formación):
+    //   cabecera: magic, versión, semilla, partidas, tick, último disparo enemigo,
+    //             entrada pendiente, estado del generador, puntuación, nivel, vidas, banderas,
+    //             desplazamiento, sentido y velocidad de la formación
+    //   jugador:  x, y (short), desplazamiento desde el tick anterior (byte), último disparo, arma
+    //   enemigos: número y por cada uno tipo, x, y, desplazamiento y vida
+    //   balas y balas enemigas: número y por cada una x, y, desplazamiento, velocidad y color
+    // Las coordenadas van como short: el mundo mide 800x600
+    private static final int SNAPSHOT_MAGIC = 0x5349534E; // "SISN"
+    private static final short SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_HEADER_BYTES = 4 + 2 + 8 + 4 + 8 + 8 + 1 + 8 + 4 + 4 + 4 + 1 + 4 + 4 + 1 + 1;
+    private static final int SNAPSHOT_PLAYER_BYTES = 2 + 2 + 1 + 1 + 8 + 1;
+    private static final int SNAPSHOT_ENEMY_BYTES = 1 + 2 + 2 + 1 + 1 + 1;
+    private static final int SNAPSHOT_BULLET_BYTES = 2 + 2 + 1 + 1 + 1 + 1;
+    private static final Color[] BULLET_COLORS = {Color.YELLOW, Color.CYAN, Color.RED};
+    
+    // Bytes exactos que ocupará la instantánea del estado actual
+    public int snapshotSize() {
+        return SNAPSHOT_HEADER_BYTES + SNAPSHOT_PLAYER_BYTES
+                + 4 + enemies.size() * SNAPSHOT_ENEMY_BYTES
+                + 4 + bullets.size() * SNAPSHOT_BULLET_BYTES
+                + 4 + enemyBullets.size() * SNAPSHOT_BULLET_BYTES;
+    }
+    
+    // Escribe el estado completo en buffer a partir de su posición actual (no asigna memoria)
+    public void saveSnapshot(java.nio.ByteBuffer buffer) {
+        buffer.putInt(SNAPSHOT_MAGIC);
+        buffer.putShort(SNAPSHOT_VERSION);
+        buffer.putLong(seed);
+        buffer.putInt(gamesStarted);
+        buffer.putLong(tick);
+        buffer.putLong(lastEnemyShot);
+        buffer.put((byte) ((moveLeft ? 1 : 0) | (moveRight ? 2 : 0) | (fireRequested ? 4 : 0)));
+        buffer.putLong(random.getState());
+        buffer.putInt(state.getScore());
+        buffer.putInt(state.getLevel());
+        buffer.putInt(state.getLives());
+        buffer.put((byte) ((state.isGameRunning() ? 1 : 0) | (state.isGameOver() ? 2 : 0)));
+        buffer.putInt(formation.getOffsetX());
+        buffer.putInt(formation.getOffsetY());
+        buffer.put((byte) formation.getDirection());
+        buffer.put((byte) formation.getSpeed());
+        
+        putPosition(buffer, player);
+        buffer.putLong(player.getLastShot());
+        buffer.put((byte) (player.hasUpgradedWeapon() ? 1 : 0));
+        
+        buffer.putInt(enemies.size());
+        for (int i = 0; i < enemies.size(); i++) {
+            Invader enemy = enemies.get(i);
+            buffer.put((byte) enemy.getType().ordinal());
+            putPosition(buffer, enemy);
+            buffer.put((byte) enemy.getHealth());
+        }
+        
+        putBullets(buffer, bullets);
+        putBullets(buffer, enemyBullets);
+    }
+    
+    // Sustituye el estado completo por el leído de buffer. Reutiliza los enemigos
+    // que ya son del mismo tipo y saca las balas del pool
+    public void restoreSnapshot(java.nio.ByteBuffer buffer) {
+        if (buffer.getInt() != SNAPSHOT_MAGIC) {
+            throw new IllegalArgumentException("No es una instantanea del juego");
+        }
+        short version = buffer.getShort();
+        if (version != SNAPSHOT_VERSION) {
+            throw new IllegalArgumentException("Version de instantanea no soportada: " + version);
+        }
+        seed = buffer.getLong();
+        gamesStarted = buffer.getInt();
+        tick = buffer.getLong();
+        lastEnemyShot = buffer.getLong();
+        int input = buffer.get();
+        moveLeft = (input & 1) != 0;
+        moveRight = (input & 2) != 0;
+        fireRequested = (input & 4) != 0;
+        random.setState(buffer.getLong());
+        int score = buffer.getInt();
+        int level = buffer.getInt();
+        int lives = buffer.getInt();
+        int flags = buffer.get();
+        state.restore(score, level, lives, (flags & 1) != 0, (flags & 2) != 0);
+        int formationX = buffer.getInt();
+        int formationY = buffer.getInt();
+        int formationDirection = buffer.get();
+        int formationSpeed = buffer.get();
+        
+        getPosition(buffer, player);
+        player.setLastShot(buffer.getLong());
+        if (buffer.get() != 0) {
+            player.upgradeWeapon();
+        } else {
+            player.resetWeapon();
+        }
+        
+        int enemyCount = buffer.getInt();
+        truncate(enemies, Math.min(enemies.size(), enemyCount));
+        for (int i = 0; i < enemyCount; i++) {
+            InvaderType type = InvaderType.byIndex(buffer.get());
+            Invader enemy = i < enemies.size() ? enemies.get(i) : null;
+            if (enemy == null || enemy.getType() != type) {
+                enemy = new Invader(type, 0, 0);
+                if (i < enemies.size()) {
+                    enemies.set(i, enemy);
+                } else {
+                    enemies.add(enemy);
+                }
+            }
+            getPosition(buffer, enemy);
+            enemy.setHealth(buffer.get());
+        }
+        formation.restore(enemies, formationX, formationY, formationDirection, formationSpeed);
+        
+        getBullets(buffer, bullets);
+        getBullets(buffer, enemyBullets);
+    }
+    
+    private static void putPosition(java.nio.ByteBuffer buffer, GameObject object) {
+        buffer.putShort(toShort(object.getX()));
+        buffer.putShort(toShort(object.getY()));
+        buffer.put(toByte(object.getPrevX() - object.getX()));
+        buffer.put(toByte(object.getPrevY() - object.getY()));
+    }
+    
+    private static void getPosition(java.nio.ByteBuffer buffer, GameObject object) {
+        int x = buffer.getShort();
+        int y = buffer.getShort();
+        object.restorePosition(x, y, x + buffer.get(), y + buffer.get());
+    }
+    
+    private static void putBullets(java.nio.ByteBuffer buffer, java.util.List<Bullet> list) {
+        buffer.putInt(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            Bullet bullet = list.get(i);
+            putPosition(buffer, bullet);
+            buffer.put(toByte(bullet.getSpeed()));
+            buffer.put((byte) bulletColorIndex(bullet.color));
+        }
+    }
+    
+    private void getBullets(java.nio.ByteBuffer buffer, java.util.List<Bullet> list) {
+        releaseAll(list);
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            int x = buffer.getShort();
+            int y = buffer.getShort();
+            int prevX = x + buffer.get();
+            int prevY = y + buffer.get();
+            int speed = buffer.get();
+            Bullet bullet = bulletPool.acquire(x, y, speed, BULLET_COLORS[buffer.get()]);
+            bullet.restorePosition(x, y, prevX, prevY);
+            list.add(bullet);
+        }
+    }
+    
+    private static int bulletColorIndex(Color color) {
+        for (int i = 0; i < BULLET_COLORS.length; i++) {
+            if (BULLET_COLORS[i].equals(color)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Color de bala sin formato de instantanea: " + color);
+    }
+    
+    private static short toShort(int value) {
+        if (value != (short) value) {
+            throw new IllegalStateException("Coordenada fuera de rango para la instantanea: " + value);
+        }
+        return (short) value;
+    }
+    
+    private static byte toByte(int value) {
+        if (value != (byte) value) {
+            throw new IllegalStateException("Desplazamiento fuera de rango para la instantanea: " + value);
+        }
+        return (byte) value;
+    }
+    
+    // Fase paralela de colisiones: para cada bala, el primer enemigo que toca
+    // (SpatialGrid.firstHit) entre los vivos al empezar la resolución. Solo lee la
+    // rejilla; la resolución secuencial aplica los impactos en orden de bala,
+    // así que cada bala alcanza a un único enemigo y el resultado es el mismo
+    // que el del recorrido secuencial
+    private void findHitCandidates(int from, int to) {
+        for (int i = from; i < to; i++) {
+            hitCandidates[i] = enemyGrid.firstHit(bullets.get(i));
+        }
+    }
+    
+    // Tick paralelo: con un pool, el movimiento de la formación y la
+    // reconstrucción de la rejilla (lo que crece con la oleada) se reparten en
+    // tramos; la búsqueda de impactos también, pero solo con miles de balas.
+    // El resultado es idéntico bit a bit al secuencial; con null se vuelve al
+    // tick secuencial
+    public void setParallelism(java.util.concurrent.ForkJoinPool pool) {
+        this.pool = pool;
+    }
+    
+    // Con pocas entidades repartir cuesta más de lo que ahorra
+    private boolean isParallel() {
+        return pool != null && enemies.size() >= ParallelRange.MIN_PARALLEL;
+    }
+    
+    // Devuelve todas las balas de la lista al pool y la vacía
+    private void releaseAll(java.util.List<Bullet> list) {
+        for (int i = 0; i < list.size(); i++) {
+            bulletPool.release(list.get(i));
+        }
+        list.clear();
+    }
+    
+    // Recorta la lista quitando desde el final (sin subList ni copias)
+    private static void truncate(java.util.List<?> list, int size) {
+        for (int i = list.size() - 1; i >= size; i--) {
+            list.remove(i);
+        }
+    }
+    
+    // Entrada
+    public void setMoveLeft(boolean moveLeft) { this.moveLeft = moveLeft; }
+    public void setMoveRight(boolean moveRight) { this.moveRight = moveRight; }
+    public void requestFire() { fireRequested = true; }
+    
+    // Getters
+    public GameState getState() { return state; }
+    public boolean isRunning() { return state.isGameRunning(); }
+    public long getSeed() { return seed; }
+    public long getTick() { return tick; }
+    public long getElapsedMillis() { return tick * TICK_MILLIS; }
+    public Player getPlayer() { return player; }
+    public java.util.List<Invader> getEnemies() { return enemies; }
+    public java.util.List<Bullet> getBullets() { return bullets; }
+    public java.util.List<Bullet> getEnemyBullets() { return enemyBullets; }
+}
+
+// Reparte el rango [0, count) en tramos contiguos sobre un ForkJoinPool.
+// Cada tramo debe escribir solo en sus propios índices
+class ParallelRange {
+    public static final int MIN_PARALLEL = 4096;
+    private static final int MIN_CHUNK = 1024;
+    
+    interface Body {
+        void run(int from, int to);
+    }
+    
+    public static void run(java.util.concurrent.ForkJoinPool pool, int count, Body body) {
+        run(pool, count, MIN_CHUNK, body);
+    }
+    
+    // minChunk 1 sirve para repartir unas pocas piezas ya grandes (tramos de la rejilla)
+    public static void run(java.util.concurrent.ForkJoinPool pool, int count, int minChunk, Body body) {
+        int chunk = Math.max(minChunk, count / (pool.getParallelism() * 4));
+        if (count <= chunk) {
+            body.run(0, count);
+            return;
+        }
+        pool.invoke(new Task(body, 0, count, chunk));
+    }
+    
+    @SuppressWarnings("serial")
+    private static class Task extends java.util.concurrent.RecursiveAction {
+        private final Body body;
+        private final int from, to, chunk;
+        
+        Task(Body body, int from, int to, int chunk) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                body.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Task(body, from, middle, chunk), new Task(body, middle, to, chunk));
+        }
+    }
+}
+
+// Mismo generador congruencial lineal que java.util.Random (misma secuencia
+// para la misma semilla) pero con el estado accesible para las instantáneas.
+// No es seguro entre hilos: cada GameWorld tiene el suyo. No se serializa
+// (su estado viaja en las instantáneas)
+@SuppressWarnings("serial")
+class GameRandom extends Random {
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+    
+    private long state;
+    
+    @Override
+    public void setSeed(long seed) {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+    
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+    
+    public long getState() { return state; }
+    public void setState(long state) { this.state = state & MASK; }
+}
+
+// Políticas de entrada para partidas sin jugador humano
+interface InputPolicy {
+    void apply(GameWorld world, long tick);
+}
+
+// Barre de lado a lado disparando siempre
+class SweepInputPolicy implements InputPolicy {
+    @Override
+    public void apply(GameWorld world, long tick) {
+        boolean right = (tick / 120) % 2 == 0;
+        world.setMoveRight(right);
+        world.setMoveLeft(!right);
+        world.requestFire();
+    }
+}
+
+// Mantiene una dirección aleatoria unos ticks y dispara al azar
+class RandomInputPolicy implements InputPolicy {
+    private final Random random;
+    private int direction = 0;
+    private int ticksLeft = 0;
+    
+    public RandomInputPolicy(long seed) {
+        random = new Random(seed);
+    }
+    
+    @Override
+    public void apply(GameWorld world, long tick) {
+        if (ticksLeft-- <= 0) {
+            direction = random.nextInt(3) - 1;
+            ticksLeft = 10 + random.nextInt(50);
+        }
+        world.setMoveLeft(direction < 0);
+        world.setMoveRight(direction > 0);
+        if (random.nextInt(4) == 0) {
+            world.requestFire();
+        }
+    }
+}
+
+// Bucle sin pantalla: ejecuta la simulación tan rápido como permite la CPU.
+// Uso: java -Djava.awt.headless=true HeadlessRunner [ticks] [semilla]
+class HeadlessRunner {
+    public static void main(String[] args) {
+        long ticks = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        GameWorld world = new GameWorld(new GameState(), seed);
+        InputPolicy policy = new SweepInputPolicy();
+        
+        int games = 1;
+        long start = System.nanoTime();
+        for (long tick = 0; tick < ticks; tick++) {
+            if (!world.isRunning()) {
+                world.reset();
+                games++;
+            }
+            policy.apply(world, tick);
+            world.step();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        
+        System.out.printf("Ticks: %d en %.2f s (%.0f ticks/s, %.0fx tiempo real)%n",
+                ticks, seconds, ticks / seconds, ticks * GameWorld.TICK_MILLIS / 1000.0 / seconds);
+        System.out.println("Partidas jugadas: " + games);
+        System.out.println("Puntuacion actual: " + world.getState().getScore()
+                + " - Nivel: " + world.getState().getLevel());
+    }
+}
+
+// Ejecuta muchas partidas independientes en paralelo sobre un ForkJoinPool.
+// Cada partida tiene su propio GameWorld y GameState: no hay estado compartido.
+// Uso: java -Djava.awt.headless=true BatchRunner [partidas] [ticksPorPartida] [hilos]
+class BatchRunner {
+    // Resultado de una partida simulada
+    static final class GameResult {
+        final long ticks;
+        final int score;
+        final int level;
+        final int restarts;
+        
+        GameResult(long ticks, int score, int level, int restarts) {
+            this.ticks = ticks;
+            this.score = score;
+            this.level = level;
+            this.restarts = restarts;
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long ticksPerGame = args.length > 1 ? Long.parseLong(args[1]) : 10_000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(threads);
+        try {
+            java.util.List<java.util.concurrent.Callable<GameResult>> tasks = new ArrayList<>(games);
+            for (int i = 0; i < games; i++) {
+                long seed = i;
+                tasks.add(() -> playGame(new RandomInputPolicy(seed), ticksPerGame, seed));
+            }
+            
+            long start = System.nanoTime();
+            long totalTicks = 0;
+            long totalScore = 0;
+            int maxLevel = 0;
+            for (java.util.concurrent.Future<GameResult> future : pool.invokeAll(tasks)) {
+                GameResult result = future.get();
+                totalTicks += result.ticks;
+                totalScore += result.score;
+                maxLevel = Math.max(maxLevel, result.level);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            
+            System.out.printf("Partidas: %d x %d ticks con %d hilos%n", games, ticksPerGame, threads);
+            System.out.printf("Tiempo: %.2f s - %.0f ticks/s (%.0f ticks/s por hilo)%n",
+                    seconds, totalTicks / seconds, totalTicks / seconds / threads);
+            System.out.printf("Puntuacion media: %.1f - Nivel maximo: %d%n",
+                    (double) totalScore / games, maxLevel);
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    // Juega una partida completa; si se pierde, se reinicia hasta gastar los ticks
+    static GameResult playGame(InputPolicy policy, long ticks, long seed) {
+        GameWorld world = new GameWorld(new GameState(), seed);
+        int restarts = 0;
+        for (long tick = 0; tick < ticks; tick++) {
+            if (!world.isRunning()) {
+                world.reset();
+                restarts++;
+            }
+            policy.apply(world, tick);
+            world.step();
+        }
+        return new GameResult(ticks, world.getState().getScore(), world.getState().getLevel(), restarts);
+    }
+}
+
+// ==================== GRABACIÓN Y REPETICIÓN ====================
+// Registro binario compacto de la entrada: una máscara de teclas por tick.
+// Con la semilla del mundo basta para reproducir la partida exactamente.
+// Formato (big endian): magic, versión, semilla, ticks, checksum final y
+// después pares (máscara, longitud del tramo en varint) comprimidos RLE
+class InputLog {
+    public static final int LEFT = 1;
+    public static final int RIGHT = 2;
+    public static final int FIRE = 4;
+    public static final int RESTART = 8; // reiniciar la partida antes del tick
+    
+    private static final int MAGIC = 0x53495250; // "SIRP"
+    // Hay que subirla con cualquier cambio de reglas que altere la simulación,
+    // no solo del formato: un registro viejo ya no llegaría al mismo checksum.
+    // 2: formación única (movimiento de la oleada) y choque continuo de balas
+    private static final short VERSION = 2;
+    
+    private final long seed;
+    private byte[] masks = new byte[4096];
+    private int length = 0;
+    private long finalChecksum = 0;
+    
+    public InputLog(long seed) {
+        this.seed = seed;
+    }
+    
+    public static int mask(boolean left, boolean right, boolean fire, boolean restart) {
+        return (left ? LEFT : 0) | (right ? RIGHT : 0) | (fire ? FIRE : 0) | (restart ? RESTART : 0);
+    }
+    
+    public void record(int mask) {
+        if (length == masks.length) {
+            masks = Arrays.copyOf(masks, masks.length * 2);
+        }
+        masks[length++] = (byte) mask;
+    }
+    
+    public int get(int tick) { return masks[tick]; }
+    public int length() { return length; }
+    public long getSeed() { return seed; }
+    public long getFinalChecksum() { return finalChecksum; }
+    
+    public void write(java.nio.file.Path file, long checksum) throws java.io.IOException {
+        finalChecksum = checksum;
+        try (java.io.DataOutputStream out = new java.io.DataOutputStream(
+                new java.io.BufferedOutputStream(java.nio.file.Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(seed);
+            out.writeLong(length);
+            out.writeLong(checksum);
+            int i = 0;
+            while (i < length) {
+                byte mask = masks[i];
+                int run = 1;
+                while (i + run < length && masks[i + run] == mask) {
+                    run++;
+                }
+                out.writeByte(mask);
+                writeVarInt(out, run);
+                i += run;
+            }
+        }
+    }
+    
+    public static InputLog read(java.nio.file.Path file) throws java.io.IOException {
+        try (java.io.DataInputStream in = new java.io.DataInputStream(
+                new java.io.BufferedInputStream(java.nio.file.Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new java.io.IOException("No es un registro de entrada: " + file);
+            }
+            short version = in.readShort();
+            if (version != VERSION) {
+                throw new java.io.IOException("Version de registro no soportada: " + version
+                        + " (se esperaba " + VERSION + "); se grabo con otras reglas y no se puede repetir");
+            }
+            InputLog log = new InputLog(in.readLong());
+            long ticks = in.readLong();
+            log.finalChecksum = in.readLong();
+            while (log.length < ticks) {
+                byte mask = in.readByte();
+                int run = readVarInt(in);
+                for (int i = 0; i < run; i++) {
+                    log.record(mask);
+                }
+            }
+            return log;
+        }
+    }
+    
+    // Guarda el registro al salir de la JVM junto con el checksum final del mundo.
+    // stopSimulation (puede ser null) detiene antes el hilo que graba y avanza
+    // el mundo, para no guardar una máscara cuyo tick no se ha ejecutado
+    public void saveOnExit(String file, GameWorld world, Runnable stopSimulation) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (stopSimulation != null) {
+                stopSimulation.run();
+            }
+            try {
+                write(java.nio.file.Path.of(file), world.checksum());
+            } catch (java.io.IOException ex) {
+                System.err.println("No se pudo guardar la grabacion: " + ex.getMessage());
+            }
+        }));
+    }
+    
+    private static void writeVarInt(java.io.DataOutputStream out, int value) throws java.io.IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+    
+    private static int readVarInt(java.io.DataInputStream in) throws java.io.IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
+
+// Repite una grabación sin pantalla a máxima velocidad y comprueba que el
+// estado final coincide con el grabado.
+// Uso: java -Djava.awt.headless=true ReplayRunner partida.sirp [repeticiones]
+class ReplayRunner {
+    public static void main(String[] args) throws java.io.IOException {
+        InputLog log = InputLog.read(java.nio.file.Path.of(args[0]));
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        
+        GameWorld world = null;
+        long start = System.nanoTime();
+        for (int r = 0; r < repetitions; r++) {
+            world = new GameWorld(new GameState(), log.getSeed());
+            for (int tick = 0; tick < log.length(); tick++) {
+                world.applyInput(log.get(tick));
+                world.step();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long ticks = (long) log.length() * repetitions;
+        
+        System.out.printf("Repetidos %d ticks en %.3f s (%.0f ticks/s)%n", ticks, seconds, ticks / seconds);
+        System.out.println("Puntuacion: " + world.getState().getScore() + " - Nivel: " + world.getState().getLevel()
+                + " - Vidas: " + world.getState().getLives());
+        boolean exact = world.checksum() == log.getFinalChecksum();
+        System.out.println(exact ? "Reproduccion exacta" : "La reproduccion DIVERGE de la grabacion");
+        if (!exact) {
+            System.exit(1);
+        }
+    }
+}
+
+// ==================== TABLA DE RÉCORDS ====================
+// Tabla de puntuaciones persistente en un archivo proyectado en memoria
+// (FileChannel.map): insertar y consultar son escrituras y lecturas directas
+// sobre la página, sin serializar nada. Un solo proceso escribe el archivo.
+// Diseño (big endian):
+//   cabecera (64 B): magic, versión, partidas confirmadas, entradas del top,
+//                    partidas que refleja el índice del top
+//   índice del top (TOP_SIZE enteros): números de registro ordenados por puntuación
+//   registros (24 B): puntuación, nivel, ticks jugados, fecha (ms), suma de control
+// Orden de escritura para sobrevivir a una caída: primero el registro, luego
+// el contador de partidas (punto de confirmación) y por último el índice. Si el
+// índice quedó a medias se reconstruye al abrir recorriendo los registros
+class HighScoreTable implements AutoCloseable {
+    public static final int TOP_SIZE = 100;
+    
+    private static final int MAGIC = 0x53494853; // "SIHS"
+    private static final int VERSION = 1;
+    private static final int COUNT_OFFSET = 8;
+    private static final int TOP_COUNT_OFFSET = 12;
+    private static final int TOP_VERSION_OFFSET = 16;
+    private static final int TOP_OFFSET = 64;
+    private static final int RECORDS_OFFSET = 512;
+    private static final int RECORD_BYTES = 24;
+    private static final int INITIAL_CAPACITY = 4096;
+    
+    private final java.nio.channels.FileChannel channel;
+    private java.nio.MappedByteBuffer map;
+    private int capacity;
+    private int count;
+    private int topCount;
+    
+    private HighScoreTable(java.nio.channels.FileChannel channel) {
+        this.channel = channel;
+    }
+    
+    public static HighScoreTable open(java.nio.file.Path file) throws java.io.IOException {
+        java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(file,
+                java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.READ,
+                java.nio.file.StandardOpenOption.WRITE);
+        HighScoreTable table = new HighScoreTable(channel);
+        try {
+            table.load();
+        } catch (java.io.IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+        return table;
+    }
+    
+    private void load() throws java.io.IOException {
+        long size = channel.size();
+        if (size == 0) {
+            remap(INITIAL_CAPACITY);
+            map.putInt(0, MAGIC);
+            map.putInt(4, VERSION);
+            return;
+        }
+        if (size < RECORDS_OFFSET) {
+            throw new java.io.IOException("Archivo de records truncado");
+        }
+        remap((int) ((size - RECORDS_OFFSET) / RECORD_BYTES));
+        if (map.getInt(0) != MAGIC) {
+            throw new java.io.IOException("No es un archivo de records");
+        }
+        if (map.getInt(4) != VERSION) {
+            throw new java.io.IOException("Version de archivo de records no soportada: " + map.getInt(4));
+        }
+        count = Math.min(map.getInt(COUNT_OFFSET), capacity);
+        topCount = map.getInt(TOP_COUNT_OFFSET);
+        if (map.getInt(TOP_VERSION_OFFSET) != count || topCount < 0 || topCount > TOP_SIZE) {
+            rebuildTop();
+        }
+    }
+    
+    private void remap(int newCapacity) throws java.io.IOException {
+        capacity = newCapacity;
+        map = channel.map(java.nio.channels.FileChannel.MapMode.READ_WRITE, 0,
+                RECORDS_OFFSET + (long) capacity * RECORD_BYTES);
+    }
+    
+    // Registra una partida terminada. Devuelve su puesto en el top (0 es el
+    // mejor) o -1 si no entra
+    public int insert(int score, int level, long ticks, long timeMillis) throws java.io.IOException {
+        if (count == capacity) {
+            remap(capacity * 2);
+        }
+        int record = count;
+        int offset = recordOffset(record);
+        int playedTicks = (int) Math.min(ticks, Integer.MAX_VALUE);
+        map.putInt(offset, score);
+        map.putInt(offset + 4, level);
+        map.putInt(offset + 8, playedTicks);
+        map.putLong(offset + 12, timeMillis);
+        map.putInt(offset + 20, checksum(score, level, playedTicks, timeMillis));
+        
+        count++;
+        map.putInt(COUNT_OFFSET, count);
+        
+        int rank = insertIntoTop(record, score);
+        map.putInt(TOP_VERSION_OFFSET, count);
+        return rank;
+    }
+    
+    // Inserción ordenada en el índice: a igual puntuación gana la partida más antigua
+    private int insertIntoTop(int record, int score) {
+        int rank = topCount;
+        while (rank > 0 && getTopScore(rank - 1) < score) {
+            rank--;
+        }
+        if (rank == TOP_SIZE) {
+            return -1;
+        }
+        int last = Math.min(topCount, TOP_SIZE - 1);
+        for (int i = last; i > rank; i--) {
+            map.putInt(TOP_OFFSET + i * 4, map.getInt(TOP_OFFSET + (i - 1) * 4));
+        }
+        map.putInt(TOP_OFFSET + rank * 4, record);
+        if (topCount < TOP_SIZE) {
+            topCount++;
+            map.putInt(TOP_COUNT_OFFSET, topCount);
+        }
+        return rank;
+    }
+    
+    // Solo tras una caída a mitad de insert(): recorre todos los registros válidos
+    private void rebuildTop() {
+        topCount = 0;
+        map.putInt(TOP_COUNT_OFFSET, 0);
+        for (int record = 0; record < count; record++) {
+            int offset = recordOffset(record);
+            int score = map.getInt(offset);
+            if (map.getInt(offset + 20) == checksum(score, map.getInt(offset + 4),
+                    map.getInt(offset + 8), map.getLong(offset + 12))) {
+                insertIntoTop(record, score);
+            }
+        }
+        map.putInt(TOP_VERSION_OFFSET, count);
+    }
+    
+    private static int recordOffset(int record) {
+        return RECORDS_OFFSET + record * RECORD_BYTES;
+    }
+    
+    private static int checksum(int score, int level, int ticks, long timeMillis) {
+        int hash = score;
+        hash = hash * 31 + level;
+        hash = hash * 31 + ticks;
+        hash = hash * 31 + Long.hashCode(timeMillis);
+        return hash ^ MAGIC;
+    }
+    
+    // Consultas del top por puesto (0 es el mejor); leen solo ese registro
+    public int getTopScore(int rank) { return map.getInt(topRecordOffset(rank)); }
+    public int getTopLevel(int rank) { return map.getInt(topRecordOffset(rank) + 4); }
+    public int getTopTicks(int rank) { return map.getInt(topRecordOffset(rank) + 8); }
+    public long getTopTime(int rank) { return map.getLong(topRecordOffset(rank) + 12); }
+    
+    private int topRecordOffset(int rank) {
+        if (rank < 0 || rank >= topCount) {
+            throw new IndexOutOfBoundsException("Puesto " + rank + " de " + topCount);
+        }
+        return recordOffset(map.getInt(TOP_OFFSET + rank * 4));
+    }
+    
+    public int getBestScore() { return topCount == 0 ? 0 : getTopScore(0); }
+    public int getTopCount() { return topCount; }
+    public int size() { return count; }
+    
+    // Vuelca las páginas al disco (insert() no lo hace para seguir por debajo del milisegundo)
+    public void flush() {
+        map.force();
+    }
+    
+    @Override
+    public void close() throws java.io.IOException {
+        flush();
+        channel.close();
+    }
+    
+    // Vuelca y cierra la tabla al salir de la JVM (el juego no tiene otro punto de cierre)
+    public void closeOnExit() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                close();
+            } catch (java.io.IOException ex) {
+                System.err.println("No se pudo cerrar la tabla de records: " + ex.getMessage());
+            }
+        }));
+    }
+}
+
+// Muestra el top de un archivo de récords.
+// Uso: java HighScores [archivo] [n]
+class HighScores {
+    public static void main(String[] args) throws java.io.IOException {
+        String file = args.length > 0 ? args[0] : GamePanel.HIGH_SCORES_FILE;
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        try (HighScoreTable table = HighScoreTable.open(java.nio.file.Path.of(file))) {
+            System.out.println("Partidas registradas: " + table.size());
+            java.time.format.DateTimeFormatter format = java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+            for (int rank = 0; rank < Math.min(n, table.getTopCount()); rank++) {
+                System.out.printf("%3d. %8d  nivel %3d  %s%n", rank + 1, table.getTopScore(rank), table.getTopLevel(rank),
+                        format.format(java.time.LocalDateTime.ofInstant(
+                                java.time.Instant.ofEpochMilli(table.getTopTime(rank)), java.time.ZoneId.systemDefault())));
+            }
+        }
+    }
+}
+
+// ==================== BENCHMARKS ====================
+// Compara listas de objetos con EntityStore en los pases de balas y de
+// colisión. Uso: java -Djava.awt.headless=true EntityStoreBenchmark [entidades...]
+class EntityStoreBenchmark {
+    private static final String[] TYPES = {"small", "medium", "large"};
+    private static final int BULLETS = 1000;
+    
+    public static void main(String[] args) {
+        int[] counts = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[] {10_000, 50_000, 100_000};
+        
+        for (int count : counts) {
+            Random random = new Random(42);
+            java.util.List<GameObject> objects = new ArrayList<>(count);
+            EntityStore store = new EntityStore(count);
+            for (int i = 0; i < count; i++) {
+                String type = TYPES[random.nextInt(TYPES.length)];
+                int px = random.nextInt(750);
+                int py = random.nextInt(500);
+                objects.add(InvaderFactory.createInvader(type, px, py));
+                store.addInvader(type, px, py);
+            }
+            
+            // Balas: mover y quitar las que salen, con objetos y con arreglos
+            // (cada ronda crea las mismas count balas y da 10 pasos)
+            int rounds = Math.max(20, 2_000_000 / count);
+            double objectBullets = time(rounds, () -> moveBulletObjects(count));
+            double storeBullets = time(rounds, () -> moveBulletStore(count));
+            
+            // Colisión: mismas balas sobre copias frescas de los enemigos
+            int collisionRounds = 5;
+            double objectCollide = time(collisionRounds, () -> collideObjects(objects, random));
+            double storeCollide = time(collisionRounds, () -> collideStore(store, random));
+            
+            System.out.printf("%,d entidades%n", count);
+            System.out.printf("  balas (mover y quitar): objetos %.2f ms, arreglos %.2f ms (%.1fx)%n",
+                    objectBullets, storeBullets, objectBullets / storeBullets);
+            System.out.printf("  colision (%d balas): objetos %.2f ms, arreglos %.2f ms (%.1fx)%n",
+                    BULLETS, objectCollide, storeCollide, objectCollide / storeCollide);
+        }
+    }
+    
+    // Balas repartidas por la pantalla; con velocidad -8 una de cada 75 sale en cada paso
+    private static void moveBulletObjects(int count) {
+        java.util.List<Bullet> bullets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            bullets.add(new Bullet(i % 800, i % GameWorld.HEIGHT, -8, Color.YELLOW));
+        }
+        for (int step = 0; step < 10; step++) {
+            int kept = 0;
+            for (int i = 0; i < bullets.size(); i++) {
+                Bullet bullet = bullets.get(i);
+                bullet.move();
+                if (!bullet.isOffScreen()) {
+                    bullets.set(kept++, bullet);
+                }
+            }
+            bullets.subList(kept, bullets.size()).clear();
+        }
+    }
+    
+    private static void moveBulletStore(int count) {
+        EntityStore bullets = new EntityStore(count);
+        for (int i = 0; i < count; i++) {
+            bullets.addBullet(i % 800, i % GameWorld.HEIGHT, -8);
+        }
+        for (int step = 0; step < 10; step++) {
+            bullets.move();
+            bullets.removeOffScreen(GameWorld.HEIGHT);
+        }
+    }
+    
+    private static void collideObjects(java.util.List<GameObject> enemies, Random random) {
+        for (int b = 0; b < BULLETS; b++) {
+            Bullet bullet = new Bullet(random.nextInt(800), random.nextInt(600), -5, Color.YELLOW);
+            for (int e = 0; e < enemies.size(); e++) {
+                if (bullet.intersects(enemies.get(e))) {
+                    break;
+                }
+            }
+        }
+    }
+    
+    private static void collideStore(EntityStore enemies, Random random) {
+        EntityStore bullets = new EntityStore(BULLETS);
+        for (int b = 0; b < BULLETS; b++) {
+            bullets.addBullet(random.nextInt(800), random.nextInt(600), -5);
+        }
+        // Se trabaja sobre una copia para que cada ronda vea los mismos enemigos
+        EntityStore copy = new EntityStore(enemies.size());
+        for (int e = 0; e < enemies.size(); e++) {
+            copy.add(enemies.getType(e), enemies.getX(e), enemies.getY(e), enemies.getWidth(e),
+                    enemies.getHeight(e), 0, enemies.getHealth(e));
+        }
+        EntityStore.collide(bullets, copy);
+    }
+    
+    // Media en milisegundos por ronda, tras una fase de calentamiento
+    private static double time(int rounds, Runnable pass) {
+        for (int i = 0; i < rounds; i++) {
+            pass.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            pass.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / rounds;
+    }
+}
+
+// Banco de pruebas de los caminos críticos, sin dependencias externas.
+// Cada caso se mide en operaciones por segundo y en bytes asignados por
+// operación (contador de asignación del hilo de la JVM, como el perfil gc).
+// Uso: java -Djava.awt.headless=true GameBenchmark [segundosPorCaso]
+class GameBenchmark {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+    
+    // Evita que el JIT elimine trabajo cuyo resultado no se usa
+    static volatile long blackhole;
+    
+    public static void main(String[] args) {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 2.0;
+        System.out.printf("%-34s %14s %12s %12s%n", "Caso", "ops/s", "ns/op", "B/op");
+        
+        // Tick completo de GameWorld con distintas cantidades de enemigos
+        checkFinishedWorldStops();
+        checkSteadyStateAllocation(15);
+        checkSteadyStateAllocation(1_000);
+        for (int count : new int[] {15, 1_000, 10_000}) {
+            run("tick (" + count + " enemigos)", seconds, 200, () -> {
+                GameWorld world = newWorld(count);
+                InputPolicy policy = new SweepInputPolicy();
+                long[] tick = {0};
+                return () -> {
+                    policy.apply(world, tick[0]++);
+                    world.step();
+                };
+            });
+        }
+        
+        // Instantáneas: guardar y restaurar el mundo completo en un ByteBuffer directo
+        for (int count : new int[] {15, 1_000, 10_000}) {
+            GameWorld world = newWorld(count);
+            java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocateDirect(world.snapshotSize());
+            world.saveSnapshot(buffer);
+            checkRoundTrip(world, buffer.flip());
+            String size = String.format("%,d B", buffer.limit());
+            run("snapshot guardar (" + count + ", " + size + ")", seconds, 1, () -> () -> {
+                buffer.clear();
+                world.saveSnapshot(buffer);
+            });
+            GameWorld target = newWorld(count);
+            run("snapshot restaurar (" + count + ")", seconds, 1, () -> () -> {
+                buffer.flip();
+                target.restoreSnapshot(buffer);
+            });
+        }
+        
+        // Tabla de récords proyectada en memoria sobre un archivo temporal
+        try {
+            java.nio.file.Path file = java.nio.file.Files.createTempFile("records", ".dat");
+            file.toFile().deleteOnExit();
+            HighScoreTable table = HighScoreTable.open(file);
+            Random random = new Random(9);
+            run("records insertar", seconds, 1, () -> () -> {
+                try {
+                    blackhole = table.insert(random.nextInt(100_000), 1, 0, 0);
+                } catch (java.io.IOException ex) {
+                    throw new java.io.UncheckedIOException(ex);
+                }
+            });
+            run("records top 10", seconds, 1, () -> () -> {
+                long sum = 0;
+                for (int rank = 0; rank < 10; rank++) {
+                    sum += table.getTopScore(rank);
+                }
+                blackhole = sum;
+            });
+            table.close();
+        } catch (java.io.IOException ex) {
+            throw new java.io.UncheckedIOException(ex);
+        }
+        
+        // Pase de colisión: fase amplia con rejilla frente a fuerza bruta
+        checkGrid();
+        for (int count : new int[] {1_000, 10_000}) {
+            java.util.List<Invader> enemies = randomInvaders(count, new Random(7));
+            java.util.List<Bullet> bullets = randomBullets(500, new Random(8));
+            SpatialGrid grid = new SpatialGrid(GameWorld.WIDTH, GameWorld.HEIGHT);
+            run("colision rejilla (" + count + ")", seconds, 1, () -> () -> {
+                grid.rebuild(enemies);
+                long hits = 0;
+                for (int b = 0; b < bullets.size(); b++) {
+                    hits += grid.firstHit(bullets.get(b));
+                }
+                blackhole = hits;
+            });
+            run("colision fuerza bruta (" + count + ")", seconds, 1, () -> () -> {
+                long hits = 0;
+                for (int b = 0; b < bullets.size(); b++) {
+                    Bullet bullet = bullets.get(b);
+                    for (int e = 0; e < enemies.size(); e++) {
+                        if (bullet.intersects(enemies.get(e))) {
+                            hits += e;
+                            break;
+                        }
+                    }
+                }
+                blackhole = hits;
+            });
+        }
+        
+        // Pase de balas sobre arrays: núcleo escalar frente al mejor disponible (SIMD si se cargó)
+        BulletKernel scalar = new ScalarBulletKernel();
+        BulletKernel best = BulletKernel.best();
+        checkKernel(best, scalar);
+        for (int count : new int[] {1_000, 100_000}) {
+            int[] startY = new int[count];
+            int[] vy = new int[count];
+            Random random = new Random(11);
+            for (int i = 0; i < count; i++) {
+                startY[i] = random.nextInt(GameWorld.HEIGHT);
+                vy[i] = random.nextBoolean() ? -8 : 5;
+            }
+            int[] y = new int[count];
+            long[] offScreen = new long[(count + 63) / 64];
+            for (BulletKernel kernel : best instanceof ScalarBulletKernel
+                    ? new BulletKernel[] {scalar} : new BulletKernel[] {scalar, best}) {
+                run("balas " + kernel.getClass().getSimpleName() + " (" + count + ")", seconds, 50, () -> {
+                    System.arraycopy(startY, 0, y, 0, count);
+                    return () -> blackhole = kernel.advance(y, vy, count, GameWorld.HEIGHT, offScreen);
+                });
+            }
+        }
+        
+        // El pase completo de EntityStore: moveBullets frente a move() y removeOffScreen()
+        checkMoveBullets(best);
+        for (int count : new int[] {1_000, 100_000}) {
+            run("balas move+removeOffScreen (" + count + ")", seconds, 10, () -> {
+                EntityStore store = bulletStore(count, new Random(13));
+                return () -> {
+                    store.move();
+                    store.removeOffScreen(GameWorld.HEIGHT);
+                };
+            });
+            run("balas moveBullets (" + count + ")", seconds, 10, () -> {
+                EntityStore store = bulletStore(count, new Random(13));
+                return () -> store.moveBullets(best, GameWorld.HEIGHT);
+            });
+        }
+        
+        // Creación de oleadas
+        for (int level : new int[] {1, 5, 10}) {
+            run("createWave(" + level + ")", seconds, 1, () -> () ->
+                    blackhole = InvaderFactory.createWave(level).size());
+        }
+        
+        // Disparo con pool: en régimen estable no debería asignar memoria
+        ShootingStrategy[] strategies = {new SingleShot(), new TripleShot(), new EnemyShot()};
+        for (ShootingStrategy strategy : strategies) {
+            BulletPool pool = new BulletPool(256);
+            java.util.List<Bullet> target = new ArrayList<>();
+            BulletSink sink = new PooledBulletSink(pool, target);
+            run("shoot " + strategy.getClass().getSimpleName(), seconds, 1, () -> () -> {
+                strategy.shoot(400, 300, sink);
+                for (int i = 0; i < target.size(); i++) {
+                    pool.release(target.get(i));
+                }
+                target.clear();
+            });
+        }
+    }
+    
+    // Mide un caso: setup prepara el estado (fuera de la medición) y devuelve
+    // la operación, que se ejecuta opsPerSetup veces antes de volver a preparar
+    static void run(String name, double seconds, int opsPerSetup,
+            java.util.function.Supplier<Runnable> setup) {
+        measure(setup, opsPerSetup, seconds / 2); // calentamiento
+        double[] result = measure(setup, opsPerSetup, seconds);
+        System.out.printf("%-34s %,14.0f %,12.1f %,12.1f%n", name, result[0], 1e9 / result[0], result[1]);
+    }
+    
+    // Devuelve {ops/s, bytes por op}
+    private static double[] measure(java.util.function.Supplier<Runnable> setup, int opsPerSetup, double seconds) {
+        long threadId = Thread.currentThread().getId();
+        long budget = (long) (seconds * 1e9);
+        long elapsed = 0;
+        long allocated = 0;
+        long ops = 0;
+        while (elapsed < budget) {
+            Runnable op = setup.get();
+            long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < opsPerSetup; i++) {
+                op.run();
+            }
+            elapsed += System.nanoTime() - start;
+            allocated += THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+            ops += opsPerSetup;
+        }
+        return new double[] {ops / (elapsed / 1e9), (double) allocated / ops};
+    }
+    
+    // Tras calentar el JIT, un tick en régimen estable no debe asignar memoria.
+    // Solo se miden ticks de una partida en curso: al perder se empieza otra
+    // con una oleada del mismo tamaño, fuera de la medida. Los ticks que crean
+    // una oleada nueva (invasores nuevos) asignan y se cuentan aparte; los B/op
+    // de "tick" son la media de esas oleadas repartida entre todos los ticks
+    private static void checkSteadyStateAllocation(int enemyCount) {
+        long threadId = Thread.currentThread().getId();
+        GameWorld world = newWorld(enemyCount);
+        Random random = new Random(enemyCount);
+        InputPolicy policy = new SweepInputPolicy();
+        int games = 1;
+        int waves = 0;
+        int measured = 0;
+        // La propia sonda se calienta con los ticks: al compilarse
+        // getThreadAllocatedBytes asigna una vez y no debe caer en la medida
+        for (long tick = 0; measured < 20_000; tick++) {
+            if (!world.isRunning()) {
+                world.reset();
+                world.setWave(randomInvaders(enemyCount, random));
+                games++;
+                continue;
+            }
+            int level = world.getState().getLevel();
+            long before = THREADS.getThreadAllocatedBytes(threadId);
+            policy.apply(world, tick);
+            world.step();
+            long allocated = THREADS.getThreadAllocatedBytes(threadId) - before;
+            if (tick < 100_000) {
+                continue;
+            }
+            if (world.getState().getLevel() != level) {
+                waves++;
+                continue;
+            }
+            if (allocated != 0) {
+                throw new IllegalStateException("El tick " + tick + " (" + enemyCount + " enemigos) asigno "
+                        + allocated + " B en regimen estable");
+            }
+            measured++;
+        }
+        System.out.printf("Asignacion por tick estable (%d enemigos): 0 B en %d ticks de partida "
+                + "(%d partidas, %d ticks con oleada nueva aparte)%n", enemyCount, measured, games, waves);
+    }
+    
+    // Un mundo con la partida terminada no debe cambiar al seguir llamando a step()
+    private static void checkFinishedWorldStops() {
+        GameWorld world = newWorld(15);
+        InputPolicy policy = new SweepInputPolicy();
+        long tick = 0;
+        while (world.isRunning()) {
+            if (tick == 1_000_000) {
+                throw new IllegalStateException("La partida de prueba no termina");
+            }
+            policy.apply(world, tick++);
+            world.step();
+        }
+        long checksum = world.checksum();
+        java.nio.ByteBuffer before = java.nio.ByteBuffer.allocate(world.snapshotSize());
+        world.saveSnapshot(before);
+        for (int i = 0; i < 1_000; i++) {
+            world.step();
+        }
+        java.nio.ByteBuffer after = java.nio.ByteBuffer.allocate(world.snapshotSize());
+        world.saveSnapshot(after);
+        if (world.checksum() != checksum || !before.flip().equals(after.flip())) {
+            throw new IllegalStateException("Una partida terminada siguio avanzando con step()");
+        }
+    }
+    
+    // La rejilla debe encontrar exactamente el mismo impacto que recorrer todos
+    // los enemigos, también con objetos que se movieron en el tick y con
+    // enemigos ya eliminados
+    private static void checkGrid() {
+        Random random = new Random(13);
+        SpatialGrid grid = new SpatialGrid(GameWorld.WIDTH, GameWorld.HEIGHT);
+        for (int round = 0; round < 20; round++) {
+            java.util.List<Invader> enemies = randomInvaders(200 + round * 100, random);
+            java.util.List<Bullet> bullets = randomBullets(500, random);
+            // Desplazamiento de la formación y balas de cualquier velocidad
+            int dx = random.nextInt(17) - 8;
+            int dy = random.nextBoolean() ? 20 : 0;
+            for (int e = 0; e < enemies.size(); e++) {
+                Invader enemy = enemies.get(e);
+                enemy.savePosition();
+                enemy.setX(enemy.getX() + dx);
+                enemy.setY(enemy.getY() + dy);
+            }
+            for (int b = 0; b < bullets.size(); b++) {
+                Bullet bullet = bullets.get(b);
+                bullet.savePosition();
+                bullet.setY(bullet.getY() - random.nextInt(60));
+            }
+            grid.rebuild(enemies);
+            for (int e = 0; e < enemies.size(); e += 7) {
+                grid.remove(e);
+            }
+            
+            for (int b = 0; b < bullets.size(); b++) {
+                Bullet bullet = bullets.get(b);
+                int expected = -1;
+                double expectedTime = 2;
+                for (int e = 0; e < enemies.size(); e++) {
+                    double time = grid.isRemoved(e) ? -1 : bullet.sweptContact(enemies.get(e));
+                    if (time >= 0 && time < expectedTime) {
+                        expected = e;
+                        expectedTime = time;
+                    }
+                }
+                int actual = grid.firstHit(bullet);
+                if (actual != expected) {
+                    throw new IllegalStateException("La rejilla da el enemigo " + actual
+                            + " y la fuerza bruta el " + expected + " (ronda " + round + ", bala " + b + ")");
+                }
+            }
+        }
+    }
+    
+    // Los dos núcleos deben dejar las mismas y y las mismas marcas, también
+    // en los bordes (0 y la altura) y en la cola que no llena un vector
+    private static void checkKernel(BulletKernel kernel, BulletKernel reference) {
+        Random random = new Random(12);
+        for (int count : new int[] {0, 1, 7, 33, 1_000}) {
+            int[] y = new int[count];
+            int[] vy = new int[count];
+            for (int i = 0; i < count; i++) {
+                y[i] = random.nextInt(GameWorld.HEIGHT + 40) - 20;
+                vy[i] = random.nextInt(21) - 10;
+            }
+            int[] expectedY = y.clone();
+            long[] expected = new long[(count + 63) / 64];
+            long[] actual = new long[(count + 63) / 64];
+            int expectedCount = reference.advance(expectedY, vy, count, GameWorld.HEIGHT, expected);
+            int actualCount = kernel.advance(y, vy, count, GameWorld.HEIGHT, actual);
+            if (actualCount != expectedCount || !Arrays.equals(y, expectedY) || !Arrays.equals(actual, expected)) {
+                throw new IllegalStateException(kernel.getClass().getSimpleName() + " no coincide con el escalar");
+            }
+        }
+    }
+    
+    // moveBullets debe dejar las mismas balas, en el mismo orden, que move()
+    // seguido de removeOffScreen()
+    private static void checkMoveBullets(BulletKernel kernel) {
+        for (int count : new int[] {0, 1, 63, 64, 65, 1_000}) {
+            EntityStore expected = bulletStore(count, new Random(count));
+            EntityStore actual = bulletStore(count, new Random(count));
+            for (int step = 0; step < 20; step++) {
+                expected.move();
+                expected.removeOffScreen(GameWorld.HEIGHT);
+                actual.moveBullets(kernel, GameWorld.HEIGHT);
+                boolean same = actual.size() == expected.size();
+                for (int i = 0; same && i < expected.size(); i++) {
+                    same = actual.getX(i) == expected.getX(i) && actual.getY(i) == expected.getY(i);
+                }
+                if (!same) {
+                    throw new IllegalStateException("moveBullets no coincide con move y removeOffScreen ("
+                            + count + " balas, paso " + step + ")");
+                }
+            }
+        }
+    }
+    
+    // Balas en toda la pantalla, hacia arriba y hacia abajo
+    private static EntityStore bulletStore(int count, Random random) {
+        EntityStore store = new EntityStore(count);
+        for (int i = 0; i < count; i++) {
+            store.addBullet(random.nextInt(GameWorld.WIDTH), random.nextInt(GameWorld.HEIGHT),
+                    random.nextBoolean() ? -8 : 5);
+        }
+        return store;
+    }
+    
+    // Restaurar en un mundo nuevo debe dar el mismo estado y la misma evolución.
+    // Al terminar, world vuelve al estado de la instantánea
+    private static void checkRoundTrip(GameWorld world, java.nio.ByteBuffer snapshot) {
+        GameWorld copy = new GameWorld(new GameState(), 0);
+        copy.restoreSnapshot(snapshot.duplicate());
+        InputPolicy policy = new SweepInputPolicy();
+        for (long tick = 0; tick < 1_000; tick++) {
+            if (copy.checksum() != world.checksum()) {
+                throw new IllegalStateException("La instantanea no reproduce la partida en el tick " + tick);
+            }
+            policy.apply(world, tick);
+            world.step();
+            policy.apply(copy, tick);
+            copy.step();
+        }
+        world.restoreSnapshot(snapshot.duplicate());
+    }
+    
+    static GameWorld newWorld(int enemyCount) {
+        GameWorld world = new GameWorld(new GameState(), enemyCount);
+        world.setWave(randomInvaders(enemyCount, new Random(enemyCount)));
+        return world;
+    }
+    
+    static java.util.List<Invader> randomInvaders(int count, Random random) {
+        java.util.List<Invader> enemies = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            enemies.add(new Invader(InvaderType.byIndex(random.nextInt(3)),
+                    50 + random.nextInt(650), random.nextInt(300)));
+        }
+        return enemies;
+    }
+    
+    static java.util.List<Bullet> randomBullets(int count, Random random) {
+        java.util.List<Bullet> bullets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            bullets.add(new Bullet(random.nextInt(800), random.nextInt(600), -5, Color.YELLOW));
+        }
+        return bullets;
+    }
+}
+
+// Rampa de carga: oleadas cada vez más grandes (createWave sin límite) hasta
+// que el tick deja de caber en el presupuesto de 60 ticks por segundo, con el
+// criterio de que el p99 del tick no supere 1/60 s. Después afina el máximo por
+// bisección. Con hilos > 0 usa el tick paralelo y antes comprueba que da el
+// mismo resultado que el secuencial.
+// Uso: java -Djava.awt.headless=true StressRunner [inicial] [maximo] [ticksPorPaso] [hilos]
+class StressRunner {
+    private static final long BUDGET_NANOS = 1_000_000_000L / 60;
+    // Deja sitio a los lados para que la formación pueda marchar
+    private static final Rectangle WAVE_AREA = new Rectangle(50, 0, GameWorld.WIDTH - 150, 300);
+    
+    private static java.util.concurrent.ForkJoinPool pool; // null: tick secuencial
+    
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int max = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        if (threads > 0) {
+            pool = new java.util.concurrent.ForkJoinPool(threads);
+            checkParallelMatches(Math.max(count, ParallelRange.MIN_PARALLEL), ticks);
+        }
+        
+        measure(count, ticks); // calentamiento del JIT
+        System.out.printf("%10s %10s %9s %9s %9s%n", "Invasores", "ticks/s", "p50 ms", "p99 ms", "max ms");
+        
+        int best = 0;
+        int failed = 0;
+        while (count <= max) {
+            if (!report(count, ticks)) {
+                failed = count;
+                break;
+            }
+            best = count;
+            count = count == max ? max + 1 : Math.min(count * 2, max);
+        }
+        
+        // Bisección entre el último tamaño que cumple y el primero que no
+        while (failed > 0 && failed - best > Math.max(best / 20, 1)) {
+            int middle = best + (failed - best) / 2;
+            if (report(middle, ticks)) {
+                best = middle;
+            } else {
+                failed = middle;
+            }
+        }
+        
+        if (failed == 0) {
+            System.out.println("Mantiene 60 ticks/s hasta el maximo probado: " + best + " invasores");
+        } else {
+            System.out.println("Maximo que mantiene 60 ticks/s: ~" + best + " invasores");
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+    
+    // Juega la misma partida con el tick secuencial y con el paralelo y
+    // compara el checksum del mundo en cada tick
+    private static void checkParallelMatches(int count, int ticks) {
+        GameWorld sequential = createWorld(count);
+        sequential.setParallelism(null);
+        GameWorld parallel = createWorld(count);
+        InputPolicy sequentialPolicy = new SweepInputPolicy();
+        InputPolicy parallelPolicy = new SweepInputPolicy();
+        for (int tick = 0; tick < ticks; tick++) {
+            sequentialPolicy.apply(sequential, tick);
+            parallelPolicy.apply(parallel, tick);
+            sequential.step();
+            parallel.step();
+            if (sequential.checksum() != parallel.checksum()) {
+                throw new IllegalStateException("El tick paralelo difiere del secuencial en el tick " + tick);
+            }
+        }
+        System.out.printf("Tick paralelo (%d hilos) identico al secuencial en %d ticks con %,d invasores%n",
+                pool.getParallelism(), ticks, count);
+    }
+    
+    private static GameWorld createWorld(int count) {
+        GameWorld world = new GameWorld(new GameState(), count);
+        world.setWave(InvaderFactory.createWave(5, count, WAVE_AREA));
+        world.setParallelism(pool);
+        return world;
+    }
+    
+    private static boolean report(int count, int ticks) {
+        long start = System.nanoTime();
+        LatencyHistogram tickTimes = measure(count, ticks);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        boolean holds = tickTimes.percentile(99) <= BUDGET_NANOS;
+        System.out.printf("%,10d %,10.0f %9.2f %9.2f %9.2f %s%n", count, ticks / seconds,
+                tickTimes.percentile(50) / 1e6, tickTimes.percentile(99) / 1e6, tickTimes.getMax() / 1e6,
+                holds ? "" : "<- no cabe en 60 ticks/s");
+        return holds;
+    }
+    
+    // Duración de cada tick de un mundo con una oleada de count invasores
+    private static LatencyHistogram measure(int count, int ticks) {
+        GameWorld world = createWorld(count);
+        InputPolicy policy = new SweepInputPolicy();
+        LatencyHistogram tickTimes = new LatencyHistogram();
+        for (int tick = 0; tick < ticks; tick++) {
+            // Una partida terminada ya no avanza: se mide otra oleada igual
+            if (!world.isRunning()) {
+                world = createWorld(count);
+            }
+            policy.apply(world, tick);
+            long start = System.nanoTime();
+            world.step();
+            tickTimes.record(System.nanoTime() - start);
+        }
+        return tickTimes;
+    }
+}
+
+// ==================== MÉTRICAS ====================
+// Histograma de rango dinámico alto (estilo HdrHistogram): cubetas
+// log-lineales con 64 subcubetas por potencia de 2 (error relativo < 1.6%).
+// Registrar un valor no asigna memoria
+class LatencyHistogram {
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;     // valores exactos por debajo de 128
+    private static final int HALF = SUB_COUNT / 2;
+    private static final int MAX_SHIFT = 63 - SUB_BITS + 1;
+    
+    private final long[] counts = new long[SUB_COUNT + MAX_SHIFT * HALF];
+    private long totalCount = 0;
+    private long sum = 0;
+    private long max = 0;
+    
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+    
+    // Valor tal que una fracción p (0..100) de las muestras es menor o igual
+    public long percentile(double p) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+    
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        max = 0;
+    }
+    
+    public long getCount() { return totalCount; }
+    public long getMax() { return max; }
+    public double getMean() { return totalCount == 0 ? 0 : (double) sum / totalCount; }
+    
+    private static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        int mantissa = (int) (value >>> shift);               // en [HALF, SUB_COUNT)
+        return SUB_COUNT + (shift - 1) * HALF + (mantissa - HALF);
+    }
+    
+    private static long highestValueOf(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_COUNT) / HALF + 1;
+        long mantissa = (index - SUB_COUNT) % HALF + HALF;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
+
+// Tiempos y contadores por tick del juego gráfico: actualización, pintado,
+// entidades, memoria asignada y pausas de GC. Se usa desde un único hilo (el
+// de eventos de Swing o el del bucle dedicado); el volcado se hace al salir
+class GameMetrics {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+    private static final java.util.List<java.lang.management.GarbageCollectorMXBean> COLLECTORS =
+            java.lang.management.ManagementFactory.getGarbageCollectorMXBeans();
+    private static final int OVERLAY_REFRESH_FRAMES = 30;
+    
+    private final LatencyHistogram updateNanos = new LatencyHistogram();
+    private final LatencyHistogram paintNanos = new LatencyHistogram();
+    private final LatencyHistogram allocatedBytes = new LatencyHistogram();
+    private final LatencyHistogram gcMillis = new LatencyHistogram();
+    private final LatencyHistogram entityCount = new LatencyHistogram();
+    private final LatencyHistogram inputDelayNanos = new LatencyHistogram();
+    
+    private long updateStart;
+    private long allocationStart;
+    private long gcStart;
+    private long paintStart;
+    private boolean overlayVisible = false;
+    private String[] overlayLines = new String[0];
+    private int framesSinceRefresh = OVERLAY_REFRESH_FRAMES;
+    
+    public void beginUpdate() {
+        gcStart = totalGcMillis();
+        allocationStart = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        updateStart = System.nanoTime();
+    }
+    
+    public void endUpdate(GameWorld world) {
+        updateNanos.record(System.nanoTime() - updateStart);
+        allocatedBytes.record(THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocationStart);
+        gcMillis.record(totalGcMillis() - gcStart);
+        entityCount.record(world.getEnemies().size() + world.getBullets().size() + world.getEnemyBullets().size());
+    }
+    
+    public void beginPaint() {
+        paintStart = System.nanoTime();
+    }
+    
+    public void endPaint() {
+        paintNanos.record(System.nanoTime() - paintStart);
+    }
+    
+    // Tiempo que un evento de entrada esperó en la cola hasta el tick que lo aplicó
+    public void recordInputDelay(long nanos) {
+        inputDelayNanos.record(nanos);
+    }
+    
+    public void toggleOverlay() {
+        overlayVisible = !overlayVisible;
+        framesSinceRefresh = OVERLAY_REFRESH_FRAMES;
+    }
+    
+    public boolean isOverlayVisible() { return overlayVisible; }
+    
+    // Las líneas del panel se recalculan cada OVERLAY_REFRESH_FRAMES pintados
+    public String[] getOverlayLines() {
+        if (++framesSinceRefresh >= OVERLAY_REFRESH_FRAMES) {
+            framesSinceRefresh = 0;
+            overlayLines = new String[] {
+                "update " + micros(updateNanos),
+                "paint  " + micros(paintNanos),
+                "input  " + micros(inputDelayNanos),
+                String.format("alloc  p50 %d B  p99 %d B /tick",
+                        allocatedBytes.percentile(50), allocatedBytes.percentile(99)),
+                String.format("gc     max %d ms/tick", gcMillis.getMax()),
+                String.format("entidades %d (max %d)", entityCount.percentile(50), entityCount.getMax())
+            };
+        }
+        return overlayLines;
+    }
+    
+    // Registra el volcado a fichero al salir de la JVM (si se indicó un fichero)
+    public void dumpOnExit(String file) {
+        if (file == null) {
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                dump(java.nio.file.Path.of(file));
+            } catch (java.io.IOException ex) {
+                System.err.println("No se pudieron guardar las metricas: " + ex.getMessage());
+            }
+        }));
+    }
+    
+    public void dump(java.nio.file.Path file) throws java.io.IOException {
+        StringBuilder out = new StringBuilder();
+        out.append("# Metricas de Space Invaders (").append(updateNanos.getCount()).append(" ticks)\n");
+        out.append(String.format("%-16s %10s %10s %10s %10s %10s%n", "metrica", "p50", "p99", "p999", "max", "media"));
+        appendRow(out, "update_ns", updateNanos);
+        appendRow(out, "paint_ns", paintNanos);
+        appendRow(out, "input_delay_ns", inputDelayNanos);
+        appendRow(out, "alloc_bytes", allocatedBytes);
+        appendRow(out, "gc_ms", gcMillis);
+        appendRow(out, "entidades", entityCount);
+        java.nio.file.Files.writeString(file, out);
+    }
+    
+    static void appendRow(StringBuilder out, String name, LatencyHistogram histogram) {
+        out.append(String.format("%-16s %10d %10d %10d %10d %10.1f%n", name,
+                histogram.percentile(50), histogram.percentile(99), histogram.percentile(99.9),
+                histogram.getMax(), histogram.getMean()));
+    }
+    
+    private static String micros(LatencyHistogram histogram) {
+        return String.format("p50 %.0f  p99 %.0f  p999 %.0f us",
+                histogram.percentile(50) / 1e3, histogram.percentile(99) / 1e3, histogram.percentile(99.9) / 1e3);
+    }
+    
+    private static long totalGcMillis() {
+        long total = 0;
+        for (int i = 0; i < COLLECTORS.size(); i++) {
+            total += Math.max(0, COLLECTORS.get(i).getCollectionTime());
+        }
+        return total;
+    }
+}
+
+// Modo de medición de latencia de entrada a pantalla (-Dlatency.file=archivo).
+// Sigue un evento de teclado cada vez: desde su llegada a keyPressed, pasando
+// por el tick que lo vacía de la cola, hasta el primer pintado posterior y la
+// sincronización con el sistema de ventanas. Mientras hay un evento en vuelo
+// los siguientes se ignoran (los mostraría el mismo cuadro). Etapas:
+//   cola    keyPressed -> inicio del tick que lo aplica
+//   update  inicio del tick -> fin de step()
+//   paint   fin de step() -> fin del último pintado del cuadro que incluye la
+//           nave (incluye la espera hasta el pintado)
+//   sync    fin del pintado -> cuadro copiado a la pantalla y Toolkit.sync()
+// Se usa desde el mismo hilo que la simulación y el pintado
+class InputLatencyProbe {
+    private final LatencyHistogram totalNanos = new LatencyHistogram();
+    private final LatencyHistogram queueNanos = new LatencyHistogram();
+    private final LatencyHistogram updateNanos = new LatencyHistogram();
+    private final LatencyHistogram paintNanos = new LatencyHistogram();
+    private final LatencyHistogram syncNanos = new LatencyHistogram();
+    
+    // Evento en vuelo (inputNanos < 0 si no hay ninguno)
+    private long inputNanos = -1;
+    private long tickStart;
+    private long updateEnd;
+    private long paintEnd;
+    
+    // Con -Dlatency.file=archivo se mide y se guarda el informe al salir
+    static InputLatencyProbe create() {
+        String file = System.getProperty("latency.file");
+        if (file == null) {
+            return null;
+        }
+        InputLatencyProbe probe = new InputLatencyProbe();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                probe.dump(java.nio.file.Path.of(file));
+            } catch (java.io.IOException ex) {
+                System.err.println("No se pudo guardar la latencia: " + ex.getMessage());
+            }
+        }));
+        return probe;
+    }
+    
+    // Inicio de un tick que aplica la entrada vaciada (oldestInput < 0 si no hubo eventos)
+    public void tickStarted(long oldestInput, long drainNanos) {
+        if (inputNanos < 0 && oldestInput >= 0) {
+            inputNanos = oldestInput;
+            tickStart = drainNanos;
+            updateEnd = 0;
+        }
+    }
+    
+    public void tickFinished() {
+        if (inputNanos >= 0 && updateEnd == 0) {
+            updateEnd = System.nanoTime();
+        }
+    }
+    
+    public void framePainted() {
+        paintEnd = System.nanoTime();
+    }
+    
+    // Cuadro ya sincronizado: cierra la muestra en vuelo si ese cuadro la mostraba
+    public void frameShown() {
+        if (inputNanos < 0 || updateEnd == 0) {
+            return;
+        }
+        long shown = System.nanoTime();
+        queueNanos.record(tickStart - inputNanos);
+        updateNanos.record(updateEnd - tickStart);
+        paintNanos.record(paintEnd - updateEnd);
+        syncNanos.record(shown - paintEnd);
+        totalNanos.record(shown - inputNanos);
+        inputNanos = -1;
+    }
+    
+    public void dump(java.nio.file.Path file) throws java.io.IOException {
+        StringBuilder out = new StringBuilder();
+        out.append("# Latencia de entrada a pantalla (").append(totalNanos.getCount()).append(" eventos)\n");
+        out.append(String.format("%-16s %10s %10s %10s %10s %10s%n", "etapa", "p50", "p99", "p999", "max", "media"));
+        GameMetrics.appendRow(out, "total_ns", totalNanos);
+        GameMetrics.appendRow(out, "cola_ns", queueNanos);
+        GameMetrics.appendRow(out, "update_ns", updateNanos);
+        GameMetrics.appendRow(out, "paint_ns", paintNanos);
+        GameMetrics.appendRow(out, "sync_ns", syncNanos);
+        java.nio.file.Files.writeString(file, out);
     }
+}
+
+// ==================== RENDERIZADO ====================
+// Línea de texto del HUD rasterizada en una imagen. Solo se vuelve a
+// maquetar y rasterizar cuando cambia su valor o su texto; el resto de
+// pintados es un único drawImage
+class HudText {
+    private final Font font;
+    private final Color color;
+    private String text = null;
+    private String prefix = null;
+    private int value = 0;
+    private java.awt.image.BufferedImage image = null;
+    private int ascent = 0;
     
-    private void drawGameOverScreen(Graphics g) {
-        g.setColor(Color.RED);
-        g.setFont(new Font("Arial", Font.BOLD, 48));
-        FontMetrics fm = g.getFontMetrics();
-        String gameOver = "GAME OVER";
-        int x = (getWidth() - fm.stringWidth(gameOver)) / 2;
-        g.drawString(gameOver, x, getHeight() / 2 - 50);
-        
-        g.setColor(Color.WHITE);
-        g.setFont(new Font("Arial", Font.BOLD, 24));
-        fm = g.getFontMetrics();
-        String score = "Puntuacion Final: " + GameManager.getInstance().getScore();
-        x = (getWidth() - fm.stringWidth(score)) / 2;
-        g.drawString(score, x, getHeight() / 2);
-        
-        String restart = "Presiona R para reiniciar";
-        x = (getWidth() - fm.stringWidth(restart)) / 2;
-        g.drawString(restart, x, getHeight() / 2 + 50);
+    public HudText(Font font, Color color) {
+        this.font = font;
+        this.color = color;
     }
     
-    @Override
-    public void actionPerformed(ActionEvent e) {
-        if (!GameManager.getInstance().isGameRunning()) {
-            return;
+    // Línea "prefijo + número": no construye el String mientras el número no cambie
+    public void drawValue(Graphics g, String prefix, int value, int x, int baseline) {
+        if (image == null || this.prefix != prefix || this.value != value) {
+            this.prefix = prefix;
+            this.value = value;
+            rasterize(g, prefix + value);
         }
-        
-        updateGame();
-        repaint();
+        g.drawImage(image, x, baseline - ascent, null);
     }
     
-    private void updateGame() {
-        // Actualizar controles del jugador
-        PlayerMovement playerMovement = (PlayerMovement) player.movementStrategy;
-        playerMovement.setMoveLeft(keys[KeyEvent.VK_A] || keys[KeyEvent.VK_LEFT]);
-        playerMovement.setMoveRight(keys[KeyEvent.VK_D] || keys[KeyEvent.VK_RIGHT]);
+    public void drawText(Graphics g, String text, int x, int baseline) {
+        if (image == null || prefix != null || !text.equals(this.text)) {
+            prefix = null;
+            rasterize(g, text);
+        }
+        g.drawImage(image, x, baseline - ascent, null);
+    }
+    
+    // Variantes centradas horizontalmente en un área de ancho dado
+    public void drawValueCentered(Graphics g, String prefix, int value, int areaWidth, int baseline) {
+        if (image == null || this.prefix != prefix || this.value != value) {
+            this.prefix = prefix;
+            this.value = value;
+            rasterize(g, prefix + value);
+        }
+        g.drawImage(image, (areaWidth - image.getWidth()) / 2, baseline - ascent, null);
+    }
+    
+    public void drawTextCentered(Graphics g, String text, int areaWidth, int baseline) {
+        if (image == null || prefix != null || !text.equals(this.text)) {
+            prefix = null;
+            rasterize(g, text);
+        }
+        g.drawImage(image, (areaWidth - image.getWidth()) / 2, baseline - ascent, null);
+    }
+    
+    private void rasterize(Graphics target, String newText) {
+        text = newText;
+        FontMetrics fm = target.getFontMetrics(font);
+        ascent = fm.getAscent();
+        int width = Math.max(1, fm.stringWidth(newText));
+        int height = Math.max(1, fm.getAscent() + fm.getDescent());
+        image = new java.awt.image.BufferedImage(width, height, java.awt.image.BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        // Mismo suavizado de texto que el destino (Swing puede activarlo según el escritorio)
+        if (target instanceof Graphics2D targetGraphics) {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                    targetGraphics.getRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING));
+        }
+        g.setFont(font);
+        g.setColor(color);
+        g.drawString(newText, 0, ascent);
+        g.dispose();
+    }
+}
+
+// Dibuja un GameWorld. Lo comparten el panel Swing y el lienzo con bucle propio.
+// alpha (0..1) interpola entre la posición del tick anterior y la actual
+class GameRenderer {
+    // Fuentes creadas una sola vez
+    private static final Font HUD_FONT = new Font("Arial", Font.BOLD, 16);
+    private static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    private static final int OVERLAY_X = 520;
+    private static final int OVERLAY_BASELINE = 20; // línea base de la primera línea
+    private static final int OVERLAY_LINE_HEIGHT = 15;
+    private static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 48);
+    private static final Font SUBTITLE_FONT = new Font("Arial", Font.BOLD, 24);
+    private static final String SCORE_LABEL = "Puntuacion: ";
+    private static final String LEVEL_LABEL = "Nivel: ";
+    private static final String LIVES_LABEL = "Vidas: ";
+    private static final String FINAL_SCORE_LABEL = "Puntuacion Final: ";
+    private static final String BEST_SCORE_LABEL = "Record: ";
+    private static final String CONTROLS = "Controles: A/D o Flechas = Mover, ESPACIO = Disparar";
+    
+    private final GameMetrics metrics;
+    private HighScoreTable highScores; // opcional
+    
+    // Líneas del HUD cacheadas como imágenes
+    private final HudText scoreText = new HudText(HUD_FONT, Color.WHITE);
+    private final HudText levelText = new HudText(HUD_FONT, Color.WHITE);
+    private final HudText livesText = new HudText(HUD_FONT, Color.WHITE);
+    private final HudText controlsText = new HudText(HUD_FONT, Color.WHITE);
+    private final HudText gameOverText = new HudText(TITLE_FONT, Color.RED);
+    private final HudText finalScoreText = new HudText(SUBTITLE_FONT, Color.WHITE);
+    private final HudText restartText = new HudText(SUBTITLE_FONT, Color.WHITE);
+    private final HudText bestScoreText = new HudText(HUD_FONT, Color.YELLOW);
+    private final HudText[] overlayText = new HudText[8];
+    private int overlayHeight = 0; // se calcula la primera vez que se pide
+    
+    public GameRenderer(GameMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    // Marca como sucia la zona del panel F3: desde arriba hasta el
+    // descendente de la última línea que cabe en overlayText
+    public void markOverlayDirty(DirtyRegionTracker dirtyRegions, java.awt.Component component) {
+        if (overlayHeight == 0) {
+            FontMetrics fm = component.getFontMetrics(OVERLAY_FONT);
+            overlayHeight = OVERLAY_BASELINE + (overlayText.length - 1) * OVERLAY_LINE_HEIGHT + fm.getDescent() + 1;
+        }
+        dirtyRegions.markDirty(OVERLAY_X, 0, GameWorld.WIDTH - OVERLAY_X, overlayHeight);
+    }
+    
+    public void setHighScores(HighScoreTable highScores) {
+        this.highScores = highScores;
+    }
+    
+    public void render(Graphics g, GameWorld world, double alpha, int width, int height) {
+        // Se lee el estado del mundo que se dibuja, no el de la fachada única
+        GameState state = world.getState();
+        if (!state.isGameRunning()) {
+            drawGameOverScreen(g, state, width, height);
+            return;
+        }
         
-        // Mover jugador
-        player.move();
+        // Con repintado parcial solo se dibuja lo que cae dentro del recorte
+        Rectangle clip = g.getClipBounds();
+        
+        // Dibujar todos los objetos
+        drawInterpolated(g, world.getPlayer(), alpha, clip);
         
-        // Mover enemigos
-        for (GameObject enemy : enemies) {
-            enemy.move();
+        java.util.List<Invader> enemies = world.getEnemies();
+        for (int i = 0; i < enemies.size(); i++) {
+            drawInterpolated(g, enemies.get(i), alpha, clip);
         }
         
-        // Mover balas
-        for (Bullet bullet : bullets) {
-            bullet.move();
+        java.util.List<Bullet> bullets = world.getBullets();
+        for (int i = 0; i < bullets.size(); i++) {
+            drawInterpolated(g, bullets.get(i), alpha, clip);
         }
         
-        for (Bullet bullet : enemyBullets) {
-            bullet.move();
+        java.util.List<Bullet> enemyBullets = world.getEnemyBullets();
+        for (int i = 0; i < enemyBullets.size(); i++) {
+            drawInterpolated(g, enemyBullets.get(i), alpha, clip);
         }
         
-        // Disparos enemigos
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastEnemyShot > 1000 && !enemies.isEmpty()) { // Cada segundo
-            int randomEnemy = (int) (Math.random() * enemies.size());
-            GameObject enemy = enemies.get(randomEnemy);
-            
-            if (enemy instanceof SmallInvader) {
-                enemyBullets.addAll(((SmallInvader) enemy).shoot());
-            } else if (enemy instanceof MediumInvader) {
-                enemyBullets.addAll(((MediumInvader) enemy).shoot());
-            } else if (enemy instanceof LargeInvader) {
-                enemyBullets.addAll(((LargeInvader) enemy).shoot());
+        // Dibujar UI
+        drawUI(g, state);
+    }
+    
+    // Desplaza el dibujo a la posición interpolada sin tocar el estado del objeto
+    private void drawInterpolated(Graphics g, GameObject object, double alpha, Rectangle clip) {
+        if (alpha >= 1.0) {
+            if (clip == null || (object.getX() <= clip.x + clip.width && clip.x <= object.getX() + object.getWidth()
+                    && object.getY() <= clip.y + clip.height && clip.y <= object.getY() + object.getHeight())) {
+                object.draw(g);
             }
-            
-            lastEnemyShot = currentTime;
+            return;
         }
+        int dx = (int) Math.round((object.getPrevX() - object.getX()) * (1.0 - alpha));
+        int dy = (int) Math.round((object.getPrevY() - object.getY()) * (1.0 - alpha));
+        g.translate(dx, dy);
+        object.draw(g);
+        g.translate(-dx, -dy);
+    }
+    
+    private void drawUI(Graphics g, GameState state) {
+        scoreText.drawValue(g, SCORE_LABEL, state.getScore(), 10, 25);
+        levelText.drawValue(g, LEVEL_LABEL, state.getLevel(), 10, 45);
+        livesText.drawValue(g, LIVES_LABEL, state.getLives(), 10, 65);
+        controlsText.drawText(g, CONTROLS, 10, 85);
         
-        // Colisiones bala-enemigo
-        Iterator<Bullet> bulletIterator = bullets.iterator();
-        while (bulletIterator.hasNext()) {
-            Bullet bullet = bulletIterator.next();
-            
-            if (bullet.isOffScreen()) {
-                bulletIterator.remove();
-                continue;
+        // Panel de métricas (F3)
+        if (metrics.isOverlayVisible()) {
+            String[] lines = metrics.getOverlayLines();
+            for (int i = 0; i < lines.length && i < overlayText.length; i++) {
+                if (overlayText[i] == null) {
+                    overlayText[i] = new HudText(OVERLAY_FONT, Color.GREEN);
+                }
+                overlayText[i].drawText(g, lines[i], OVERLAY_X, OVERLAY_BASELINE + i * OVERLAY_LINE_HEIGHT);
             }
-            
-            Iterator<GameObject> enemyIterator = enemies.iterator();
-            while (enemyIterator.hasNext()) {
-                GameObject enemy = enemyIterator.next();
+        }
+    }
+    
+    private void drawGameOverScreen(Graphics g, GameState state, int width, int height) {
+        gameOverText.drawTextCentered(g, "GAME OVER", width, height / 2 - 50);
+        finalScoreText.drawValueCentered(g, FINAL_SCORE_LABEL, state.getScore(), width, height / 2);
+        restartText.drawTextCentered(g, "Presiona R para reiniciar", width, height / 2 + 50);
+        if (highScores != null) {
+            bestScoreText.drawValueCentered(g, BEST_SCORE_LABEL, highScores.getBestScore(), width, height / 2 + 90);
+        }
+    }
+}
+
+// Repintado incremental: registra los rectángulos que ocupaba cada entidad en
+// el cuadro anterior y los que ocupa ahora, los acumula en una rejilla de
+// teselas y repinta solo las zonas marcadas. Si la zona sucia supera el
+// umbral (fracción del área) se repinta el panel completo
+class DirtyRegionTracker {
+    private static final int TILE = 32;
+    
+    private final int cols;
+    private final int rows;
+    private final double fullRepaintThreshold;
+    private final boolean[] dirty;
+    private int dirtyCount = 0;
+    private boolean fullRepaint = true;
+    
+    // Rectángulos (x, y, ancho, alto) dibujados en el cuadro anterior y en el actual
+    private int[] previous = new int[256];
+    private int previousCount = 0;
+    private int[] current = new int[256];
+    private int currentCount = 0;
+    
+    public DirtyRegionTracker(int width, int height, double fullRepaintThreshold) {
+        cols = (width + TILE - 1) / TILE;
+        rows = (height + TILE - 1) / TILE;
+        this.fullRepaintThreshold = fullRepaintThreshold;
+        dirty = new boolean[cols * rows];
+    }
+    
+    // Fuerza un repintado completo en el próximo cuadro (cambio de pantalla, etc.)
+    public void requestFullRepaint() {
+        fullRepaint = true;
+    }
+    
+    // Registra una entidad en su posición actual (el sprite ocupa un píxel más)
+    public void addObject(GameObject object) {
+        addRect(object.getX(), object.getY(), object.getWidth() + 1, object.getHeight() + 1);
+    }
+    
+    public void addRect(int x, int y, int width, int height) {
+        if (currentCount * 4 == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        int i = currentCount++ * 4;
+        current[i] = x;
+        current[i + 1] = y;
+        current[i + 2] = width;
+        current[i + 3] = height;
+        markDirty(x, y, width, height);
+    }
+    
+    // Marca una zona sin recordarla para el cuadro siguiente (p. ej. el HUD)
+    public void markDirty(int x, int y, int width, int height) {
+        int c0 = Math.max(0, x / TILE), c1 = Math.min(cols - 1, (x + width - 1) / TILE);
+        int r0 = Math.max(0, y / TILE), r1 = Math.min(rows - 1, (y + height - 1) / TILE);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                if (!dirty[r * cols + c]) {
+                    dirty[r * cols + c] = true;
+                    dirtyCount++;
+                }
+            }
+        }
+    }
+    
+    // Cierra el cuadro: añade las posiciones antiguas y repinta lo necesario.
+    // Devuelve true si pintó ya (paintImmediately) y false si pidió un repaint()
+    public boolean repaint(JComponent component) {
+        for (int i = 0; i < previousCount * 4; i += 4) {
+            markDirty(previous[i], previous[i + 1], previous[i + 2], previous[i + 3]);
+        }
+        
+        boolean painted = !(fullRepaint || dirtyCount > fullRepaintThreshold * dirty.length);
+        if (painted) {
+            paintDirtyTiles(component);
+        } else {
+            component.repaint();
+        }
+        
+        // El cuadro actual pasa a ser el anterior
+        int[] swap = previous;
+        previous = current;
+        previousCount = currentCount;
+        current = swap;
+        currentCount = 0;
+        Arrays.fill(dirty, false);
+        dirtyCount = 0;
+        fullRepaint = false;
+        return painted;
+    }
+    
+    // Une las teselas sucias en tramos horizontales por fila, extiende hacia
+    // abajo los tramos idénticos y pinta cada rectángulo resultante
+    private void paintDirtyTiles(JComponent component) {
+        for (int r = 0; r < rows; r++) {
+            int c = 0;
+            while (c < cols) {
+                if (!dirty[r * cols + c]) {
+                    c++;
+                    continue;
+                }
+                int start = c;
+                while (c < cols && dirty[r * cols + c]) {
+                    c++;
+                }
+                int end = c;
                 
-                if (bullet.getBounds().intersects(enemy.getBounds())) {
-                    bulletIterator.remove();
-                    boolean destroyed = false;
-                    if (enemy instanceof SmallInvader smallInvader) {
-                        destroyed = smallInvader.takeDamage();
-                    } else if (enemy instanceof MediumInvader mediumInvader) {
-                        destroyed = mediumInvader.takeDamage();
-                    } else if (enemy instanceof LargeInvader largeInvader) {
-                        destroyed = largeInvader.takeDamage();
-                    }
-                    
-                    if (destroyed) {
-                        enemyIterator.remove();
+                int bottom = r + 1;
+                while (bottom < rows && isRun(bottom, start, end)) {
+                    for (int k = start; k < end; k++) {
+                        dirty[bottom * cols + k] = false;
                     }
-                    break;
+                    bottom++;
                 }
+                component.paintImmediately(start * TILE, r * TILE, (end - start) * TILE, (bottom - r) * TILE);
             }
         }
-        
-        // Colisiones bala enemiga-jugador
-        Iterator<Bullet> enemyBulletIterator = enemyBullets.iterator();
-        while (enemyBulletIterator.hasNext()) {
-            Bullet bullet = enemyBulletIterator.next();
-            
-            if (bullet.isOffScreen()) {
-                enemyBulletIterator.remove();
-                continue;
+    }
+    
+    // true si la fila tiene exactamente el tramo [start, end) sucio
+    private boolean isRun(int row, int start, int end) {
+        for (int c = start; c < end; c++) {
+            if (!dirty[row * cols + c]) {
+                return false;
             }
-            
-            if (bullet.getBounds().intersects(player.getBounds())) {
-                enemyBulletIterator.remove();
-                GameManager.getInstance().loseLife();
-                break;
+        }
+        boolean leftClosed = start == 0 || !dirty[row * cols + start - 1];
+        boolean rightClosed = end == cols || !dirty[row * cols + end];
+        return leftClosed && rightClosed;
+    }
+}
+
+// ==================== ENTRADA ====================
+// Recibe cada evento de entrada con su instante de llegada (System.nanoTime)
+interface InputHandler {
+    void onInput(int event, long nanos);
+}
+
+// Cola sin bloqueos de un productor (el hilo de eventos de Swing) y un
+// consumidor (el hilo que avanza la simulación). Los eventos viven en arrays
+// primitivos de un anillo de tamaño fijo: encolar y vaciar no asignan memoria.
+// Cada lado solo escribe su propio índice; el productor publica el evento con
+// setRelease y el consumidor lo ve con getAcquire
+class InputQueue {
+    private final int[] events;
+    private final long[] times;
+    private final int indexMask;
+    private final java.util.concurrent.atomic.AtomicLong head = new java.util.concurrent.atomic.AtomicLong(); // siguiente a leer
+    private final java.util.concurrent.atomic.AtomicLong tail = new java.util.concurrent.atomic.AtomicLong(); // siguiente a escribir
+    private long cachedHead = 0; // última cabeza vista por el productor
+    private long dropped = 0;    // solo lo escribe el productor
+    
+    public InputQueue(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("La capacidad debe ser potencia de 2: " + capacity);
+        }
+        events = new int[capacity];
+        times = new long[capacity];
+        indexMask = capacity - 1;
+    }
+    
+    // Productor: false si la cola está llena (el evento se descarta)
+    public boolean offer(int event, long nanos) {
+        long t = tail.getPlain();
+        if (t - cachedHead == events.length) {
+            cachedHead = head.getAcquire();
+            if (t - cachedHead == events.length) {
+                dropped++;
+                return false;
             }
         }
+        int index = (int) t & indexMask;
+        events[index] = event;
+        times[index] = nanos;
+        tail.setRelease(t + 1);
+        return true;
+    }
+    
+    // Consumidor: entrega en orden todos los eventos publicados hasta ahora
+    public int drain(InputHandler handler) {
+        long h = head.getPlain();
+        long t = tail.getAcquire();
+        for (long i = h; i < t; i++) {
+            int index = (int) i & indexMask;
+            handler.onInput(events[index], times[index]);
+        }
+        head.setRelease(t);
+        return (int) (t - h);
+    }
+    
+    public int capacity() { return events.length; }
+    public long getDropped() { return dropped; }
+}
+
+// Teclado del juego: el hilo de eventos solo encola pulsaciones y
+// liberaciones con su instante, y el hilo de la simulación las vacía al
+// empezar cada tick y las convierte en la máscara de InputLog. Así el estado
+// de las teclas y los disparos pendientes solo los toca el hilo que simula
+class KeyboardInput implements InputHandler {
+    private static final int PRESSED = 1 << 16;
+    private static final int KEY_MASK = PRESSED - 1;
+    
+    private final InputQueue queue = new InputQueue(256);
+    private final GameMetrics metrics;
+    
+    // Solo los usa el consumidor
+    private final boolean[] keys = new boolean[256];
+    private boolean firePressed = false;
+    private boolean restartPressed = false;
+    private boolean overlayToggled = false;
+    private long drainNanos;
+    private long oldestInputNanos = -1; // llegada del primer evento del último vaciado
+    
+    public KeyboardInput(GameMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    // Productor (hilo de eventos)
+    public void keyPressed(KeyEvent e) {
+        queue.offer(e.getKeyCode() & KEY_MASK | PRESSED, System.nanoTime());
+    }
+    
+    public void keyReleased(KeyEvent e) {
+        queue.offer(e.getKeyCode() & KEY_MASK, System.nanoTime());
+    }
+    
+    // Consumidor: vacía la cola al empezar el tick y devuelve su máscara.
+    // Un disparo pulsado y soltado entre dos ticks no se pierde
+    public int nextMask(GameState state) {
+        drainNanos = System.nanoTime();
+        oldestInputNanos = -1;
+        queue.drain(this);
+        int mask = InputLog.mask(keys[KeyEvent.VK_A] || keys[KeyEvent.VK_LEFT],
+                keys[KeyEvent.VK_D] || keys[KeyEvent.VK_RIGHT],
+                firePressed, restartPressed && state.isGameOver());
+        firePressed = false;
+        restartPressed = false;
+        return mask;
+    }
+    
+    // true una vez por cada pulsación de F3 vaciada desde la última llamada
+    public boolean takeOverlayToggle() {
+        boolean toggled = overlayToggled;
+        overlayToggled = false;
+        return toggled;
+    }
+    
+    public long getDrainNanos() { return drainNanos; }
+    public long getOldestInputNanos() { return oldestInputNanos; }
+    
+    @Override
+    public void onInput(int event, long nanos) {
+        metrics.recordInputDelay(drainNanos - nanos);
+        if (oldestInputNanos < 0) {
+            oldestInputNanos = nanos;
+        }
+        int code = event & KEY_MASK;
+        boolean pressed = (event & PRESSED) != 0;
+        if (code < keys.length) {
+            keys[code] = pressed;
+        }
+        if (!pressed) {
+            return;
+        }
+        if (code == KeyEvent.VK_SPACE) {
+            firePressed = true;
+        } else if (code == KeyEvent.VK_R) {
+            restartPressed = true;
+        } else if (code == KeyEvent.VK_F3) {
+            overlayToggled = !overlayToggled;
+        }
+    }
+}
+
+// ==================== PANEL PRINCIPAL DEL JUEGO ====================
+// Solo dibuja el estado de GameWorld y le reenvía la entrada del teclado
+class GamePanel extends JPanel implements ActionListener, KeyListener {
+    private final javax.swing.Timer gameTimer;
+    private final GameWorld world;
+    private final GameMetrics metrics = new GameMetrics();
+    private final GameRenderer renderer = new GameRenderer(metrics);
+    private final DirtyRegionTracker dirtyRegions = new DirtyRegionTracker(GameWorld.WIDTH, GameWorld.HEIGHT, 0.5);
+    private final KeyboardInput input = new KeyboardInput(metrics);
+    private final InputLatencyProbe latency = InputLatencyProbe.create(); // null si no se mide
+    private boolean playerPainted = false; // la nave se pintó desde la última muestra
+    private final InputLog recording; // null si no se graba la partida
+    private final HighScoreTable highScores; // null si no se pudo abrir
+    private int lastScore, lastLevel, lastLives;
+    private boolean wasRunning = false;
+    
+    public GamePanel() {
+        setPreferredSize(new Dimension(GameWorld.WIDTH, GameWorld.HEIGHT));
+        setBackground(Color.BLACK);
+        setFocusable(true);
         
-        // Verificar si todos los enemigos han sido destruidos
-        if (enemies.isEmpty()) {
-            GameManager.getInstance().nextLevel();
-            enemies.addAll(InvaderFactory.createWave(GameManager.getInstance().getLevel()));
-            
-            // Mejorar arma cada 3 niveles
-            if (GameManager.getInstance().getLevel() % 3 == 0) {
-                player.upgradeWeapon();
+        world = new GameWorld(GameManager.getInstance().getState(), Long.getLong("game.seed", System.nanoTime()));
+        // El Timer y EXIT_ON_CLOSE corren en el hilo de eventos: al salir no hay tick a medias
+        recording = createRecording(world, null);
+        highScores = openHighScores();
+        renderer.setHighScores(highScores);
+        
+        gameTimer = new javax.swing.Timer(GameWorld.TICK_MILLIS, this); // ~60 FPS
+        gameTimer.start();
+        
+        // Add key listener after construction is complete
+        SwingUtilities.invokeLater(() -> addKeyListener(this));
+        
+        metrics.dumpOnExit(System.getProperty("metrics.file"));
+    }
+    
+    // Con -Dreplay.record=archivo se graba la entrada de cada tick y se guarda al salir
+    static InputLog createRecording(GameWorld world, Runnable stopSimulation) {
+        String file = System.getProperty("replay.record");
+        if (file == null) {
+            return null;
+        }
+        InputLog log = new InputLog(world.getSeed());
+        log.saveOnExit(file, world, stopSimulation);
+        return log;
+    }
+    
+    static final String HIGH_SCORES_FILE = "puntuaciones.dat";
+    
+    // Tabla de récords en -Dhighscores.file; si no se puede abrir se juega sin ella.
+    // Se cierra sola al salir
+    static HighScoreTable openHighScores() {
+        String file = System.getProperty("highscores.file", HIGH_SCORES_FILE);
+        try {
+            HighScoreTable table = HighScoreTable.open(java.nio.file.Path.of(file));
+            table.closeOnExit();
+            return table;
+        } catch (java.io.IOException ex) {
+            System.err.println("No se pudo abrir la tabla de records " + file + ": " + ex.getMessage());
+            return null;
+        }
+    }
+    
+    // Registra la partida que acaba de terminar
+    static void saveHighScore(HighScoreTable highScores, GameWorld world) {
+        if (highScores == null) {
+            return;
+        }
+        try {
+            highScores.insert(world.getState().getScore(), world.getState().getLevel(), world.getTick(),
+                    System.currentTimeMillis());
+        } catch (java.io.IOException ex) {
+            System.err.println("No se pudo guardar el record: " + ex.getMessage());
+        }
+    }
+    
+    @Override
+    protected void paintComponent(Graphics g) {
+        metrics.beginPaint();
+        super.paintComponent(g);
+        renderer.render(g, world, 1.0, getWidth(), getHeight());
+        metrics.endPaint();
+        if (latency != null) {
+            // Con repintado parcial se llama una vez por rectángulo: solo
+            // cuentan los que incluyen a la nave
+            Rectangle clip = g.getClipBounds();
+            Player player = world.getPlayer();
+            if (clip == null || clip.intersects(player.getX(), player.getY(), player.getWidth() + 1, player.getHeight() + 1)) {
+                latency.framePainted();
+                playerPainted = true;
             }
         }
+    }
+    
+    // Cierra la muestra de latencia cuando el cuadro ya se copió a la pantalla
+    private void frameShown() {
+        if (playerPainted) {
+            playerPainted = false;
+            Toolkit.getDefaultToolkit().sync();
+            latency.frameShown();
+        }
+    }
+    
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        // Vaciar la entrada del tick como una máscara (la que se graba) y avanzar un paso fijo
+        int mask = input.nextMask(world.getState());
+        if (input.takeOverlayToggle()) {
+            metrics.toggleOverlay();
+            dirtyRegions.requestFullRepaint();
+        }
+        if (!world.isRunning() && (mask & InputLog.RESTART) == 0) {
+            return;
+        }
         
-        // Verificar si algún enemigo llegó al fondo
-        for (GameObject enemy : enemies) {
-            if (enemy.getY() > 500) {
-                GameManager.getInstance().loseLife();
-                break;
+        if (recording != null) {
+            recording.record(mask);
+        }
+        world.applyInput(mask);
+        boolean running = world.isRunning();
+        if (latency != null) {
+            latency.tickStarted(input.getOldestInputNanos(), input.getDrainNanos());
+        }
+        metrics.beginUpdate();
+        world.step();
+        metrics.endUpdate(world);
+        if (latency != null) {
+            latency.tickFinished();
+        }
+        if (running && !world.isRunning()) {
+            saveHighScore(highScores, world);
+        }
+        boolean painted = repaintChangedRegions();
+        if (latency != null) {
+            if (painted) {
+                frameShown(); // paintImmediately ya volcó cada rectángulo a la pantalla
+            } else {
+                // El repaint() completo se procesa en un evento ya encolado; este va detrás
+                SwingUtilities.invokeLater(this::frameShown);
             }
         }
     }
     
+    // Repinta solo las zonas donde algo cambió (o todo si es demasiado).
+    // Devuelve true si ya se pintó, false si se pidió un repaint() asíncrono
+    private boolean repaintChangedRegions() {
+        GameState state = world.getState();
+        if (state.isGameRunning() != wasRunning) {
+            wasRunning = state.isGameRunning();
+            dirtyRegions.requestFullRepaint();
+        }
+        
+        dirtyRegions.addObject(world.getPlayer());
+        java.util.List<Invader> enemies = world.getEnemies();
+        for (int i = 0; i < enemies.size(); i++) {
+            dirtyRegions.addObject(enemies.get(i));
+        }
+        java.util.List<Bullet> bullets = world.getBullets();
+        for (int i = 0; i < bullets.size(); i++) {
+            dirtyRegions.addObject(bullets.get(i));
+        }
+        java.util.List<Bullet> enemyBullets = world.getEnemyBullets();
+        for (int i = 0; i < enemyBullets.size(); i++) {
+            dirtyRegions.addObject(enemyBullets.get(i));
+        }
+        
+        // HUD: solo cuando cambia alguno de sus valores; el panel F3 siempre
+        if (state.getScore() != lastScore || state.getLevel() != lastLevel || state.getLives() != lastLives) {
+            lastScore = state.getScore();
+            lastLevel = state.getLevel();
+            lastLives = state.getLives();
+            dirtyRegions.markDirty(0, 0, 200, 70);
+        }
+        if (metrics.isOverlayVisible()) {
+            renderer.markOverlayDirty(dirtyRegions, this);
+        }
+        
+        return dirtyRegions.repaint(this);
+    }
+    
     @Override
     public void keyPressed(KeyEvent e) {
-        keys[e.getKeyCode()] = true;
+        input.keyPressed(e);
+    }
+    
+    @Override
+    public void keyReleased(KeyEvent e) {
+        input.keyReleased(e);
+    }
+    
+    @Override
+    public void keyTyped(KeyEvent e) {}
+}
+
+// ==================== BUCLE DE JUEGO DEDICADO ====================
+// Alternativa al Timer de Swing: un hilo propio avanza la simulación en pasos
+// fijos medidos con System.nanoTime() (recuperando los pasos atrasados) y
+// dibuja con renderizado activo (BufferStrategy), interpolando entre el
+// estado anterior y el actual para que se vea fluido a 120/144 Hz
+@SuppressWarnings("serial")
+class GameLoopCanvas extends Canvas implements Runnable, KeyListener {
+    private static final long STEP_NANOS = GameWorld.TICK_MILLIS * 1_000_000L;
+    private static final int MAX_CATCH_UP_STEPS = 5;
+    private static final long MAX_FRAME_NANOS = 250_000_000L;
+    
+    private final GameWorld world;
+    private final GameMetrics metrics = new GameMetrics();
+    private final GameRenderer renderer = new GameRenderer(metrics);
+    private final long frameNanos;
+    private final KeyboardInput input = new KeyboardInput(metrics); // del hilo de eventos al del bucle
+    private final InputLatencyProbe latency = InputLatencyProbe.create(); // null si no se mide
+    private final InputLog recording; // null si no se graba la partida
+    private final HighScoreTable highScores; // null si no se pudo abrir
+    private volatile boolean running = false;
+    private volatile Thread loopThread;
+    
+    public GameLoopCanvas(int refreshRate) {
+        setPreferredSize(new Dimension(GameWorld.WIDTH, GameWorld.HEIGHT));
+        setBackground(Color.BLACK);
+        setIgnoreRepaint(true); // nadie más pinta este lienzo
+        setFocusable(true);
+        addKeyListener(this);
         
-        if (e.getKeyCode() == KeyEvent.VK_SPACE) {
-            bullets.addAll(player.shoot());
+        world = new GameWorld(GameManager.getInstance().getState(), Long.getLong("game.seed", System.nanoTime()));
+        recording = GamePanel.createRecording(world, this::stop);
+        highScores = GamePanel.openHighScores();
+        renderer.setHighScores(highScores);
+        frameNanos = 1_000_000_000L / refreshRate;
+        metrics.dumpOnExit(System.getProperty("metrics.file"));
+    }
+    
+    // Se llama cuando el lienzo ya es visible (BufferStrategy lo necesita)
+    public void start() {
+        createBufferStrategy(2);
+        requestFocus();
+        running = true;
+        loopThread = new Thread(this, "game-loop");
+        loopThread.setDaemon(true);
+        loopThread.start();
+    }
+    
+    // Termina el bucle y espera a que acabe el tick en curso (con un límite,
+    // por si el hilo está bloqueado pintando al cerrar la ventana)
+    public void stop() {
+        running = false;
+        Thread thread = loopThread;
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
         }
+    }
+    
+    @Override
+    public void run() {
+        java.awt.image.BufferStrategy strategy = getBufferStrategy();
+        long previous = System.nanoTime();
+        long accumulator = 0;
+        long nextFrame = previous;
         
-        if (e.getKeyCode() == KeyEvent.VK_R && GameManager.getInstance().isGameOver()) {
-            initGame();
+        while (running) {
+            long now = System.nanoTime();
+            accumulator += Math.min(now - previous, MAX_FRAME_NANOS);
+            previous = now;
+            
+            // Pasos fijos; si vamos muy atrasados se descarta el resto
+            int steps = 0;
+            while (running && accumulator >= STEP_NANOS && steps < MAX_CATCH_UP_STEPS) {
+                int mask = input.nextMask(world.getState());
+                if (input.takeOverlayToggle()) {
+                    metrics.toggleOverlay();
+                }
+                if (world.isRunning() || (mask & InputLog.RESTART) != 0) {
+                    if (recording != null) {
+                        recording.record(mask);
+                    }
+                    world.applyInput(mask);
+                    boolean wasRunning = world.isRunning();
+                    if (latency != null) {
+                        latency.tickStarted(input.getOldestInputNanos(), input.getDrainNanos());
+                    }
+                    metrics.beginUpdate();
+                    world.step();
+                    metrics.endUpdate(world);
+                    if (latency != null) {
+                        latency.tickFinished();
+                    }
+                    if (wasRunning && !world.isRunning()) {
+                        GamePanel.saveHighScore(highScores, world);
+                    }
+                }
+                accumulator -= STEP_NANOS;
+                steps++;
+            }
+            if (steps == MAX_CATCH_UP_STEPS) {
+                accumulator = 0;
+            }
+            
+            render(strategy, (double) accumulator / STEP_NANOS);
+            
+            // Esperar al siguiente cuadro de la pantalla
+            nextFrame += frameNanos;
+            long wait = nextFrame - System.nanoTime();
+            if (wait > 0) {
+                java.util.concurrent.locks.LockSupport.parkNanos(wait);
+            } else {
+                nextFrame = System.nanoTime();
+            }
         }
     }
     
+    private void render(java.awt.image.BufferStrategy strategy, double alpha) {
+        do {
+            do {
+                Graphics g = strategy.getDrawGraphics();
+                metrics.beginPaint();
+                g.setColor(Color.BLACK);
+                g.fillRect(0, 0, getWidth(), getHeight());
+                renderer.render(g, world, alpha, getWidth(), getHeight());
+                metrics.endPaint();
+                g.dispose();
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        if (latency != null) {
+            latency.framePainted();
+        }
+        Toolkit.getDefaultToolkit().sync();
+        if (latency != null) {
+            latency.frameShown();
+        }
+    }
+    
+    @Override
+    public void keyPressed(KeyEvent e) {
+        input.keyPressed(e);
+    }
+    
     @Override
     public void keyReleased(KeyEvent e) {
-        keys[e.getKeyCode()] = false;
+        input.keyReleased(e);
     }
     
     @Override
@@ -652,29 +4020,54 @@ class GamePanel extends JPanel implements ActionListener, KeyListener {
 }
 
 // ==================== CLASE PRINCIPAL ====================
+// Uso: java SpaceInvadersGraphic [--loop [hz]]
+// --loop usa el bucle dedicado con renderizado activo (hz: frecuencia de dibujo)
 public class SpaceInvadersGraphic {
     public static void main(String[] args) {
+        boolean dedicatedLoop = args.length > 0 && args[0].equals("--loop");
+        int refreshRate = args.length > 1 ? Integer.parseInt(args[1]) : displayRefreshRate();
+        
         SwingUtilities.invokeLater(() -> {
             JFrame frame = new JFrame("Space Invaders - Patrones de Diseño");
             frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
             frame.setResizable(false);
             
-            GamePanel gamePanel = new GamePanel();
-            frame.add(gamePanel);
-            
-            frame.pack();
-            frame.setLocationRelativeTo(null);
-            frame.setVisible(true);
+            if (dedicatedLoop) {
+                GameLoopCanvas canvas = new GameLoopCanvas(refreshRate);
+                frame.add(canvas);
+                frame.pack();
+                frame.setLocationRelativeTo(null);
+                frame.setVisible(true);
+                canvas.start();
+            } else {
+                GamePanel gamePanel = new GamePanel();
+                frame.add(gamePanel);
+                
+                frame.pack();
+                frame.setLocationRelativeTo(null);
+                frame.setVisible(true);
+            }
             
             System.out.println("Space Invaders Gráfico iniciado!");
             System.out.println("Controles:");
             System.out.println("- A/D o Flechas: Mover nave");
             System.out.println("- ESPACIO: Disparar");
             System.out.println("- R: Reiniciar (cuando termina el juego)");
+            System.out.println("- F3: Mostrar/ocultar metricas de rendimiento");
             System.out.println("\nPatrones implementados:");
             System.out.println("- SINGLETON: GameManager controla estado global");
             System.out.println("- STRATEGY: Movimiento y disparo intercambiables");
             System.out.println("- FACTORY: Creación dinámica de enemigos");
         });
     }
+    
+    // Frecuencia de la pantalla principal, o 60 Hz si no se conoce
+    private static int displayRefreshRate() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return 60;
+        }
+        int rate = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+        return rate == java.awt.DisplayMode.REFRESH_RATE_UNKNOWN ? 60 : rate;
+    }
 }
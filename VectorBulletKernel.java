@@ -0,0 +1,48 @@
+import jdk.incubator.vector.*;
+
+// ==================== NÚCLEO SIMD DEL PASE DE BALAS ====================
+// Versión con la Vector API de BulletKernel (ver BulletKernel.java):
+// avanza tantas balas por instrucción como quepan en un vector del
+// procesador y calcula la máscara de fuera de pantalla en los mismos carriles.
+// Va en su propio archivo porque jdk.incubator.vector es un módulo incubador
+// que hay que añadir explícitamente; si no se compila, el juego usa el núcleo
+// escalar (BulletKernel.best()).
+// Compilar (después de SpaceInvadersGraphic.java) y ejecutar:
+//   javac --add-modules jdk.incubator.vector VectorBulletKernel.java
+//   java --add-modules jdk.incubator.vector -Djava.awt.headless=true GameBenchmark
+public class VectorBulletKernel implements BulletKernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    // Peso de cada carril (1, 2, 4...): sumar los carriles marcados da la máscara en bits
+    private static final IntVector LANE_BITS = laneBits();
+    private static final IntVector ZERO = IntVector.zero(SPECIES);
+    
+    @Override
+    public int advance(int[] y, int[] vy, int count, int screenHeight, long[] offScreen) {
+        int outside = 0;
+        int i = 0;
+        int bound = SPECIES.loopBound(count);
+        for (; i < bound; i += SPECIES.length()) {
+            IntVector py = IntVector.fromArray(SPECIES, y, i).add(IntVector.fromArray(SPECIES, vy, i));
+            py.intoArray(y, i);
+            VectorMask<Integer> out = py.compare(VectorOperators.LT, 0)
+                    .or(py.compare(VectorOperators.GT, screenHeight));
+            // Sin VectorMask.toLong, que en JDK 17 no es intrínseco y crea un
+            // array por llamada. El número de carriles divide a 64: el tramo
+            // nunca cruza de palabra
+            long bits = ZERO.blend(LANE_BITS, out).reduceLanes(VectorOperators.OR) & 0xFFFFFFFFL;
+            offScreen[i >>> 6] = (i & 63) == 0 ? bits : offScreen[i >>> 6] | bits << (i & 63);
+            outside += Long.bitCount(bits);
+        }
+        
+        // Cola que no llena un vector completo
+        return outside + ScalarBulletKernel.advanceRange(y, vy, i, count, screenHeight, offScreen);
+    }
+    
+    private static IntVector laneBits() {
+        int[] bits = new int[SPECIES.length()];
+        for (int lane = 0; lane < bits.length; lane++) {
+            bits[lane] = 1 << lane;
+        }
+        return IntVector.fromArray(SPECIES, bits, 0);
+    }
+}